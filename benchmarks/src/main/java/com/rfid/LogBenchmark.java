@@ -0,0 +1,56 @@
+package com.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per call of {@link Util} logging from a reader thread, with the same log
+ * pipeline the UI uses (its panel is never shown). At benchmark rates nearly every
+ * call is over its category's per-second limit, which is exactly the situation a
+ * busy reader puts the pipeline in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LogBenchmark {
+    private static final String EPC = "E28011700000000000000042";
+
+    private Util util;
+    private Util disabled;
+    private int antenna = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        util = new Util(new RfidPanel());
+        disabled = new Util(null);
+    }
+
+    @Benchmark
+    public void addLog() {
+        util.addLog("Enabled antenna 1");
+    }
+
+    @Benchmark
+    public void logTagRead() {
+        util.log(LogCategory.TAG_READ, "📡 Tag detected: %s, Antenna: %d, RSSI: %.2f", EPC, 1 + (antenna++ & 3), -52.5);
+    }
+
+    @Benchmark
+    public void addLogWithoutPanel() {
+        disabled.addLog("Enabled antenna 1");
+    }
+}
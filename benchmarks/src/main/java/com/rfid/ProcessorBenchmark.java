@@ -0,0 +1,97 @@
+package com.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads per second from {@link RfidTagProcessor#enqueue(TagDetail, long, double)}
+ * until the consumer thread has handed every one to storage. Each invocation reads
+ * {@value #READS} tags at a fresh reader, so every read becomes a write, and the
+ * storage is a stub, so the queue, fold, cache and (optionally) journal are what is
+ * measured. The linger defaults to 0, as a partial last batch would otherwise add
+ * the full linger to every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+    private static final int READS = 10_000;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    @Param({"500"})
+    public int batchSize;
+
+    @Param({"0"})
+    public long lingerMillis;
+
+    private StubTagStorage storage;
+    private RfidTagProcessor processor;
+    private Path journalDir;
+    private final String[] epcs = new String[READS];
+    private long round = 0;
+    private long expected = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < READS; i++) {
+            epcs[i] = String.format("E28011700000%012d", i);
+        }
+        storage = new StubTagStorage();
+        processor = new RfidTagProcessor(storage, new TagStateCache(),
+                new TagRingBuffer(TagRingBuffer.DEFAULT_CAPACITY, TagRingBuffer.OverflowPolicy.COALESCE),
+                new Util(null), batchSize, lingerMillis);
+        if (journal) {
+            journalDir = TempDirs.create("jmh-journal");
+            processor.setJournal(new ReadJournal(journalDir));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        processor.stop();
+        // The consumer thread closes the journal once it sees the stop
+        Thread.sleep(500);
+        TempDirs.delete(journalDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public void enqueueToPersist() {
+        String reader = "10.0." + (round / 250 % 250) + "." + (round % 250);
+        round++;
+        long micros = System.currentTimeMillis() * 1_000;
+        Instant seen = TagDetail.instantOfMicros(micros);
+        for (int i = 0; i < READS; i++) {
+            processor.enqueue(new TagDetail(epcs[i], 1 + (i & 3), seen, seen, reader), micros + i, -50.0);
+        }
+        expected += READS;
+        while (storage.getSaved() < expected) {
+            Thread.onSpinWait();
+        }
+        // Keep the cache at its steady-state size rather than growing into eviction
+        processor.getCache().invalidateReaders(List.of(reader));
+    }
+}
@@ -0,0 +1,68 @@
+package com.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One streaming XLSX report of {@code rows} stored tags from four readers mapped to
+ * four laps, written to a discarding stream; rows per second is {@code rows}
+ * divided by the score. Each row lands on the tags, reader and lap sheets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReportBenchmark {
+    private static final int READERS = 4;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"500"})
+    public int rowWindow;
+
+    private StubTagStorage storage;
+    private final Map<Integer, List<String>> lapIpMap = new TreeMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<TagDetail> tags = new ArrayList<>(rows);
+        Instant start = Instant.parse("2025-10-12T07:00:00Z");
+        for (int i = 0; i < rows; i++) {
+            Instant seen = start.plusMillis(i * 37L);
+            tags.add(new TagDetail(String.format("E28011700000%012d", i / READERS), 1 + i % 4, seen, seen,
+                    "10.0.0." + (1 + i % READERS)));
+        }
+        storage = new StubTagStorage(tags);
+        for (int lap = 1; lap <= READERS; lap++) {
+            lapIpMap.put(lap, List.of("10.0.0." + lap));
+        }
+    }
+
+    @Benchmark
+    public long generateStreamingReport() throws IOException {
+        return new GenerateReport(rowWindow).generateStreamingReport(storage, lapIpMap,
+                OutputStream.nullOutputStream(), row -> { }, () -> false);
+    }
+}
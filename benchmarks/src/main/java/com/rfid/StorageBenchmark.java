@@ -0,0 +1,125 @@
+package com.rfid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of single upserts, batched upserts and lookups against a store holding
+ * {@code tags} rows. {@code storage=embedded} runs in a temp directory;
+ * {@code storage=postgres} uses the app's jdbc.* settings, passed as system
+ * properties (-jvmArgsAppend -Djdbc.url=...), in a separate "jmh" event that is
+ * dropped afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final String EVENT = "jmh";
+    private static final int BATCH = 500;
+    private static final String[] READERS = {"10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4"};
+
+    @Param({"embedded"})
+    public String storage;
+
+    @Param({"10000"})
+    public int tags;
+
+    private TagStorage store;
+    private JdbcConnectionPool pool;
+    private Path dir;
+    private TagDetail[] rows;
+    private final List<TagDetail> batch = new ArrayList<>(BATCH);
+    private int next = 0;
+    private long micros;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("postgres".equals(storage)) {
+            AppConfig config = new AppConfig(System.getProperties());
+            pool = new JdbcConnectionPool(
+                    config.getString("jdbc.url", "jdbc:postgresql://localhost:5432/speedway?reWriteBatchedInserts=true"),
+                    config.getString("jdbc.user", "perfectkode"),
+                    config.getString("jdbc.password", "perfectkode"));
+            store = new TagStorageService(pool, TagStorageService.DEFAULT_FETCH_SIZE, EVENT);
+        } else {
+            dir = TempDirs.create("jmh-tagstore");
+            store = new EmbeddedTagStorage(dir, EVENT);
+        }
+        store.deleteAll();
+
+        micros = System.currentTimeMillis() * 1_000;
+        Instant seen = TagDetail.instantOfMicros(micros);
+        rows = new TagDetail[tags];
+        for (int i = 0; i < tags; i++) {
+            rows[i] = new TagDetail(String.format("E28011700000%012d", i / READERS.length), 1, seen, seen,
+                    READERS[i % READERS.length]);
+        }
+        for (int i = 0; i < tags; i += BATCH) {
+            store.saveAll(List.of(rows).subList(i, Math.min(tags, i + BATCH)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            new TagStorageService(pool, TagStorageService.DEFAULT_FETCH_SIZE,
+                    TagStorageService.DEFAULT_EVENT_NAME).dropEvent(EVENT);
+            pool.close();
+        } else {
+            ((EmbeddedTagStorage) store).close();
+            TempDirs.delete(dir);
+        }
+    }
+
+    private TagDetail nextRead() {
+        TagDetail row = rows[next];
+        next = (next + 1) % rows.length;
+        row.setLastSeen(TagDetail.instantOfMicros(++micros));
+        return row;
+    }
+
+    @Benchmark
+    public void save() {
+        store.save(nextRead());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void saveAll() {
+        batch.clear();
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(nextRead());
+        }
+        store.saveAll(batch);
+    }
+
+    @Benchmark
+    public Optional<TagDetail> lookup() {
+        TagDetail row = rows[next];
+        next = (next + 1) % rows.length;
+        return store.findByTagIdAndReader(row.getTagId(), row.getReader());
+    }
+}
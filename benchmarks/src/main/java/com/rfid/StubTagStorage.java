@@ -0,0 +1,133 @@
+package com.rfid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storage that costs nothing: writes are only counted and reads iterate a fixed
+ * list, so benchmarks measure the code in front of the database.
+ */
+class StubTagStorage implements TagStorage {
+    private final List<TagDetail> tags;
+    private final AtomicLong saved = new AtomicLong();
+
+    StubTagStorage() {
+        this(List.of());
+    }
+
+    StubTagStorage(List<TagDetail> tags) {
+        this.tags = tags;
+    }
+
+    long getSaved() {
+        return saved.get();
+    }
+
+    @Override
+    public Optional<TagDetail> findByTagIdAndReader(String tagId, String reader) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void save(TagDetail tag) {
+        saved.incrementAndGet();
+    }
+
+    @Override
+    public void saveAll(List<TagDetail> batch) {
+        saved.addAndGet(batch.size());
+    }
+
+    @Override
+    public List<TagDetail> findAll() {
+        return new ArrayList<>(tags);
+    }
+
+    @Override
+    public long forEachTag(TagVisitor visitor) {
+        long count = 0;
+        for (TagDetail tag : tags) {
+            count++;
+            if (!visitor.visit(tag)) break;
+        }
+        return count;
+    }
+
+    @Override
+    public long forEachTagByReaders(List<String> readerIps, boolean latestPerTag, String afterTagId, String toTagId,
+                                    TagVisitor visitor) {
+        long count = 0;
+        for (TagDetail tag : tags) {
+            if (readerIps.contains(tag.getReader())) {
+                count++;
+                if (!visitor.visit(tag)) break;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long forEachTagByLap(Map<Integer, List<String>> lapIpMap, boolean latestPerTag, LapTagVisitor visitor) {
+        long count = 0;
+        for (Map.Entry<Integer, List<String>> lap : lapIpMap.entrySet()) {
+            for (TagDetail tag : tags) {
+                if (lap.getValue().contains(tag.getReader())) {
+                    count++;
+                    if (!visitor.visit(lap.getKey(), tag)) return count;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<Integer, List<String>> findTagIdBoundaries(Map<Integer, List<String>> lapIpMap, boolean latestPerTag,
+                                                          int chunkSize) {
+        return Map.of();
+    }
+
+    @Override
+    public long countAll() {
+        return tags.size();
+    }
+
+    @Override
+    public long countByReaders(List<String> readerIps) {
+        return tags.stream().filter(tag -> readerIps.contains(tag.getReader())).count();
+    }
+
+    @Override
+    public void deleteAll() {
+    }
+
+    @Override
+    public void dropEvent(String eventName) {
+    }
+
+    @Override
+    public List<TagDetail> fetchUnsyncedIpTags() {
+        return List.of();
+    }
+
+    @Override
+    public void deleteByReaderIps(List<String> readerIps) {
+    }
+
+    @Override
+    public List<TagDetail> fetchChangedTags(List<String> readerIps, long afterChangeSeq, int limit) {
+        return List.of();
+    }
+
+    @Override
+    public int markSynced(List<TagDetail> batch) {
+        return batch.size();
+    }
+
+    @Override
+    public List<TagDetail> deleteSynced(List<String> readerIps, List<TagDetail> sent, boolean latestPerTag) {
+        return List.of();
+    }
+}
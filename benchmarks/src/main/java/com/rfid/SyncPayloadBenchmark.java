@@ -0,0 +1,69 @@
+package com.rfid;
+
+import okio.BufferedSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing a sync payload of {@code tags} tags over four laps through
+ * {@link SyncRequestBody}, plain and gzipped, into a sink that discards the bytes
+ * the way a socket would take them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncPayloadBenchmark {
+    private static final int LAPS = 4;
+
+    @Param({"1000", "10000", "100000"})
+    public int tags;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private SyncRequestBody body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<Integer, List<TagDetail>> lapTags = new TreeMap<>();
+        Instant start = Instant.parse("2025-10-12T07:00:00Z");
+        for (int i = 0; i < tags; i++) {
+            int lap = 1 + i % LAPS;
+            Instant seen = start.plusMillis(i * 37L);
+            lapTags.computeIfAbsent(lap, l -> new ArrayList<>())
+                    .add(new TagDetail(String.format("E28011700000%012d", i / LAPS), 1 + i % 4, seen, seen,
+                            "10.0.0." + lap));
+        }
+        body = new SyncRequestBody("JMH Marathon", lapTags, gzip);
+    }
+
+    @Benchmark
+    public long writeTo() throws IOException {
+        try (BufferedSink sink = Okio.buffer(Okio.blackhole())) {
+            body.writeTo(sink);
+        }
+        return body.getTagsWritten();
+    }
+}
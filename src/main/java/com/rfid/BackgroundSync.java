@@ -0,0 +1,126 @@
+package com.rfid;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live sync while the race is running. Every {@code intervalMillis} it pages
+ * through the NOT_SYNCED rows of each lap's readers in change_seq order, posts
+ * each page as a small sync payload and then marks exactly those row versions
+ * SYNCED in one batched update. Rows are kept, so a later full sync or report
+ * still sees them, and a row that changes again goes back to NOT_SYNCED with a
+ * new change_seq.
+ */
+public class BackgroundSync {
+    public static final long DEFAULT_INTERVAL_MILLIS = 5_000;
+    public static final int DEFAULT_BATCH_SIZE = 2_000;
+
+    public interface CycleListener {
+        void onCycle(long tagsSent, long totalTagsSent, String error);
+    }
+
+    private final TagStorage storage;
+    private final SyncTransport transport;
+    private final long intervalMillis;
+    private final int batchSize;
+    private final boolean gzip;
+    private final AtomicLong totalSent = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public BackgroundSync(TagStorage storage, SyncTransport transport) {
+        this(storage, transport, DEFAULT_INTERVAL_MILLIS, DEFAULT_BATCH_SIZE, false);
+    }
+
+    public BackgroundSync(TagStorage storage, SyncTransport transport, long intervalMillis, int batchSize,
+                          boolean gzip) {
+        this.storage = storage;
+        this.transport = transport;
+        this.intervalMillis = Math.max(100, intervalMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.gzip = gzip;
+    }
+
+    public static BackgroundSync fromConfig(AppConfig config, TagStorage storage, SyncTransport transport) {
+        return new BackgroundSync(storage, transport,
+                config.getLong("sync.live.intervalMillis", DEFAULT_INTERVAL_MILLIS),
+                config.getInt("sync.live.batchSize", DEFAULT_BATCH_SIZE),
+                config.getBoolean("sync.gzip", false));
+    }
+
+    public synchronized void start(String marathon, Map<Integer, List<String>> lapIpMap, CycleListener listener) {
+        stop();
+        Map<Integer, List<String>> laps = new TreeMap<>(lapIpMap);
+        totalSent.set(0);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BackgroundSync-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> runCycle(marathon, laps, listener),
+                0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    private void runCycle(String marathon, Map<Integer, List<String>> laps, CycleListener listener) {
+        long sent = 0;
+        String error = null;
+        try {
+            for (Map.Entry<Integer, List<String>> entry : laps.entrySet()) {
+                sent += syncLap(marathon, entry.getKey(), entry.getValue());
+            }
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        long total = totalSent.addAndGet(sent);
+        if (listener != null && (sent > 0 || error != null)) {
+            listener.onCycle(sent, total, error);
+        }
+    }
+
+    private long syncLap(String marathon, int lapNumber, List<String> ips) throws IOException {
+        long sent = 0;
+        long watermark = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<TagDetail> changed = storage.fetchChangedTags(ips, watermark, batchSize);
+            if (changed.isEmpty()) {
+                break;
+            }
+            SyncRequestBody body = new SyncRequestBody(marathon, Map.of(lapNumber, changed), gzip);
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Idempotency-Key", UUID.randomUUID().toString());
+            if (gzip) {
+                headers.put("Content-Encoding", "gzip");
+            }
+            SyncTransport.Reply reply = transport.post("/api/rfid/sync", body, headers, true);
+            if (!reply.isSuccessful()) {
+                throw new IOException("HTTP " + reply.code() + ": " + reply.body());
+            }
+            storage.markSynced(changed);
+            sent += changed.size();
+            watermark = changed.get(changed.size() - 1).getChangeSeq();
+            if (changed.size() < batchSize) {
+                break;
+            }
+        }
+        return sent;
+    }
+}
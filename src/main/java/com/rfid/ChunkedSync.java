@@ -0,0 +1,236 @@
+package com.rfid;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends a database sync as bounded chunks (per lap, per tag_id range) instead of
+ * one giant POST. Every chunk carries an idempotency key, at most
+ * {@code parallelism} chunks are in flight, and a chunk's rows are deleted locally
+ * only once the server acknowledged it. A chunk's rows are loaded once and the
+ * rows it sent are recorded before it goes out, so every attempt under its key,
+ * including one resumed later, sends the same rows or fewer. The plan and
+ * acknowledgements live in a {@link SyncProgress} file, so after a failure the
+ * next run resends only what is missing.
+ */
+public class ChunkedSync {
+    public static final int DEFAULT_CHUNK_SIZE = 5_000;
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final String DEFAULT_PROGRESS_FILE = "sync-progress.json";
+
+    public interface ChunkSender {
+        /** Sends one chunk and returns normally only if the server acknowledged it. */
+        void send(SyncRequestBody body, String idempotencyKey) throws IOException;
+    }
+
+    public interface ProgressListener {
+        void onProgress(int ackedChunks, int totalChunks, long tagsSent, double tagsPerSecond);
+    }
+
+    public record Result(int totalChunks, int ackedChunks, long tagsSent, long elapsedMillis, boolean resumed,
+                         String firstError) {
+        public boolean isComplete() {
+            return ackedChunks == totalChunks;
+        }
+
+        public double tagsPerSecond() {
+            return elapsedMillis == 0 ? tagsSent : tagsSent * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private final TagStorage storage;
+    private final int chunkSize;
+    private final int parallelism;
+    private final Path progressFile;
+    private TagStateCache tagStateCache;
+
+    public ChunkedSync(TagStorage storage) {
+        this(storage, DEFAULT_CHUNK_SIZE, DEFAULT_PARALLELISM, Paths.get(DEFAULT_PROGRESS_FILE));
+    }
+
+    public ChunkedSync(TagStorage storage, int chunkSize, int parallelism, Path progressFile) {
+        this.storage = storage;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.progressFile = progressFile;
+    }
+
+    public static ChunkedSync fromConfig(AppConfig config, TagStorage storage) {
+        return new ChunkedSync(storage,
+                config.getInt("sync.chunkSize", DEFAULT_CHUNK_SIZE),
+                config.getInt("sync.parallelism", DEFAULT_PARALLELISM),
+                Paths.get(config.getString("sync.progressFile", DEFAULT_PROGRESS_FILE)));
+    }
+
+    public void setTagStateCache(TagStateCache tagStateCache) {
+        this.tagStateCache = tagStateCache;
+    }
+
+    public Result run(String marathon, Map<Integer, List<String>> lapIpMap, boolean merge, boolean gzip,
+                      ChunkSender sender, ProgressListener listener) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        SyncProgress progress = SyncProgress.load(progressFile);
+        boolean resumed = progress != null && progress.matches(marathon, merge, lapIpMap);
+        if (!resumed) {
+            progress = plan(marathon, lapIpMap, merge);
+            if (progress.getChunks().isEmpty()) {
+                Files.deleteIfExists(progressFile);
+                return new Result(0, 0, 0, 0, false, null);
+            }
+            progress.save(progressFile);
+        }
+
+        SyncProgress plan = progress;
+        int total = plan.getChunks().size();
+        AtomicInteger acked = new AtomicInteger(plan.ackedCount());
+        AtomicLong tagsSent = new AtomicLong();
+        AtomicReference<String> firstError = new AtomicReference<>();
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "SyncChunk-Thread-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SyncProgress.Chunk chunk : plan.getChunks()) {
+                if (chunk.isAcked()) continue;
+                futures.add(executor.submit(() -> {
+                    try {
+                        long sent = sendChunk(plan, chunk, gzip, sender);
+                        tagsSent.addAndGet(sent);
+                        int done = acked.incrementAndGet();
+                        if (listener != null) {
+                            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                            listener.onProgress(done, total, tagsSent.get(),
+                                    seconds > 0 ? tagsSent.get() / seconds : tagsSent.get());
+                        }
+                    } catch (Exception e) {
+                        firstError.compareAndSet(null, e.getMessage() != null ? e.getMessage() : e.toString());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    firstError.compareAndSet(null, e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (acked.get() == total) {
+            Files.deleteIfExists(progressFile);
+        }
+        return new Result(total, acked.get(), tagsSent.get(), (System.nanoTime() - start) / 1_000_000,
+                resumed, firstError.get());
+    }
+
+    private SyncProgress plan(String marathon, Map<Integer, List<String>> lapIpMap, boolean merge) {
+        String syncId = UUID.randomUUID().toString();
+        SyncProgress progress = new SyncProgress(syncId, marathon, merge, lapIpMap);
+        Map<Integer, List<String>> lapBoundaries = storage.findTagIdBoundaries(progress.getLapIpMap(), merge, chunkSize);
+        for (Integer lap : progress.getLapIpMap().keySet()) {
+            List<String> boundaries = lapBoundaries.getOrDefault(lap, List.of());
+            if (boundaries.isEmpty() && merge) {
+                // The merge sync always reported every selected lap, even without tags
+                progress.getChunks().add(new SyncProgress.Chunk(lap, null, null, syncId + "-" + lap + "-0"));
+            }
+            String after = null;
+            for (int i = 0; i < boundaries.size(); i++) {
+                progress.getChunks().add(new SyncProgress.Chunk(lap, after, boundaries.get(i),
+                        syncId + "-" + lap + "-" + i));
+                after = boundaries.get(i);
+            }
+        }
+        return progress;
+    }
+
+    private long sendChunk(SyncProgress plan, SyncProgress.Chunk chunk, boolean gzip, ChunkSender sender)
+            throws IOException {
+        List<String> ips = plan.getLapIpMap().get(chunk.getLapNumber());
+        List<TagDetail> rows = loadRows(plan, chunk, ips);
+        SyncRequestBody body = new SyncRequestBody(plan.getMarathon(), Map.of(chunk.getLapNumber(), rows),
+                plan.isMerge(), gzip);
+        sender.send(body, chunk.getIdempotencyKey());
+
+        long sent = body.getTagsWritten();
+        synchronized (plan) {
+            chunk.setAcked(true);
+            chunk.setTagsSent(sent);
+            chunk.setRowIds(null);
+            chunk.setRowChangeSeqs(null);
+        }
+        plan.save(progressFile);
+
+        if (sent > 0) {
+            try {
+                List<TagDetail> deleted = storage.deleteSynced(ips, body.getSentTags(), plan.isMerge());
+                if (tagStateCache != null) {
+                    // Only the deleted rows: the others, and pending write-backs, still match what is stored
+                    deleted.forEach(tagStateCache::invalidate);
+                }
+            } catch (RuntimeException e) {
+                // Already acknowledged, so the rows are just resent by the next sync
+                System.err.println("Failed to clear synced chunk " + chunk.getIdempotencyKey() + ": " + e.getMessage());
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * The chunk's rows, recorded in the progress file before the first attempt. A chunk
+     * resumed after that attempt may already have been applied by the server, which then
+     * answers from its stored response, so it resends only recorded rows that are unchanged.
+     */
+    private List<TagDetail> loadRows(SyncProgress plan, SyncProgress.Chunk chunk, List<String> ips)
+            throws IOException {
+        List<TagDetail> rows = new ArrayList<>();
+        storage.forEachTagByReaders(ips, plan.isMerge(), chunk.getAfterTagId(), chunk.getToTagId(), rows::add);
+
+        long[] ids;
+        long[] seqs;
+        synchronized (plan) {
+            ids = chunk.getRowIds();
+            seqs = chunk.getRowChangeSeqs();
+        }
+        if (ids == null || seqs == null) {
+            ids = new long[rows.size()];
+            seqs = new long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                ids[i] = rows.get(i).getId();
+                seqs[i] = rows.get(i).getChangeSeq();
+            }
+            synchronized (plan) {
+                chunk.setRowIds(ids);
+                chunk.setRowChangeSeqs(seqs);
+            }
+            plan.save(progressFile);
+            return rows;
+        }
+
+        Map<Long, Long> recorded = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            recorded.put(ids[i], seqs[i]);
+        }
+        rows.removeIf(tag -> !Long.valueOf(tag.getChangeSeq()).equals(recorded.get(tag.getId())));
+        return rows;
+    }
+}
@@ -0,0 +1,877 @@
+package com.rfid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * TagStorage for checkpoints that have no PostgreSQL. Everything lives in this
+ * process: rows are parallel primitive columns, (tag_id, reader) interned to ints
+ * and looked up through an open-addressing long->int table, so an upsert is a
+ * couple of array probes. Every change is appended to a memory-mapped redo log;
+ * when the log is full (and on close) a checkpoint snapshot is written next to it
+ * and atomically renamed into place, after which older logs are deleted. Opening
+ * the store loads the last checkpoint and replays the logs written after it.
+ * One directory per event, so dropping an event deletes a directory.
+ */
+public class EmbeddedTagStorage implements TagStorage, AutoCloseable {
+    public static final String DEFAULT_DIR = "tagstore";
+    public static final int DEFAULT_LOG_BYTES = 64 << 20;
+
+    private static final byte DEAD = 0;
+    private static final byte NOT_SYNCED = 1;
+    private static final byte SYNCED = 2;
+
+    private static final byte OP_STRING = 1;
+    private static final byte OP_ROW = 2;
+    private static final byte OP_DELETE = 3;
+    private static final byte OP_CLEAR = 4;
+    private static final int ROW_RECORD = 56;
+
+    private static final int CHECKPOINT_MAGIC = 0x54414753;
+    private static final String CHECKPOINT = "checkpoint.dat";
+    private static final String LOG_SUFFIX = ".log";
+    private static final int MAX_STRING = 1024;
+    private static final int VISIT_BLOCK = 1024;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Path baseDir;
+    private final String eventName;
+    private final Path dir;
+    private final int logBytes;
+
+    // Interned tag ids and reader addresses
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private String[] strings = new String[1024];
+    private int stringCount = 0;
+
+    // Row columns, indexed by row number (id - 1)
+    private int[] tagCol = new int[1024];
+    private int[] readerCol = new int[1024];
+    private int[] antennaCol = new int[1024];
+    private long[] firstCol = new long[1024];
+    private long[] lastCol = new long[1024];
+    private long[] seqCol = new long[1024];
+    private byte[] statusCol = new byte[1024];
+    private int rowCount = 0;
+    private int liveRows = 0;
+    private int[] freeRows = new int[64];
+    private int freeCount = 0;
+    private final LongIntMap index = new LongIntMap(1024);
+    private long nextChangeSeq = 1;
+
+    private long logGen = 0;
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private int logPos = 0;
+
+    public EmbeddedTagStorage(Path baseDir, String eventName) {
+        this(baseDir, eventName, DEFAULT_LOG_BYTES);
+    }
+
+    public EmbeddedTagStorage(Path baseDir, String eventName, int logBytes) {
+        this.baseDir = baseDir;
+        this.eventName = eventName;
+        this.dir = baseDir.resolve(eventName);
+        this.logBytes = Math.max(1 << 16, logBytes);
+        try {
+            Files.createDirectories(dir);
+            recover();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open embedded tag storage in " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    public static EmbeddedTagStorage fromConfig(AppConfig config) {
+        return new EmbeddedTagStorage(Paths.get(config.getString("storage.embedded.dir", DEFAULT_DIR)),
+                config.getString("event.name", TagStorageService.DEFAULT_EVENT_NAME),
+                config.getInt("storage.embedded.logBytes", DEFAULT_LOG_BYTES));
+    }
+
+    // ---------------------------------------------------------------- writes
+
+    @Override
+    public synchronized void save(TagDetail tag) {
+        long key = key(intern(tag.getTagId()), intern(tag.getReader()));
+        int row = index.get(key);
+        long last = micros(tag.getLastSeen());
+        if (row < 0) {
+            insert(key, tag.getAntenna(), micros(tag.getFirstSeen()), last);
+        } else if (lastCol[row] != last) {
+            lastCol[row] = last;
+            touch(row);
+        }
+    }
+
+    @Override
+    public synchronized void saveAll(List<TagDetail> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+        for (TagDetail tag : tags) {
+            long key = key(intern(tag.getTagId()), intern(tag.getReader()));
+            int row = index.get(key);
+            long first = micros(tag.getFirstSeen());
+            long last = micros(tag.getLastSeen());
+            if (row < 0) {
+                insert(key, tag.getAntenna(), first, last);
+                continue;
+            }
+            // Same rule as the PostgreSQL upsert: only a wider first/last seen window is a change
+            boolean earlier = first != NO_TIME && firstCol[row] != NO_TIME && first < firstCol[row];
+            boolean later = last != NO_TIME && lastCol[row] != NO_TIME && last > lastCol[row];
+            if (earlier || later) {
+                if (earlier) firstCol[row] = first;
+                if (later) lastCol[row] = last;
+                touch(row);
+            }
+        }
+    }
+
+    private void insert(long key, int antenna, long first, long last) {
+        int row = freeCount > 0 ? freeRows[--freeCount] : rowCount++;
+        ensureRows(row + 1);
+        tagCol[row] = (int) (key >>> 32);
+        readerCol[row] = (int) key;
+        antennaCol[row] = antenna;
+        firstCol[row] = first;
+        lastCol[row] = last;
+        index.put(key, row);
+        liveRows++;
+        touch(row);
+    }
+
+    private void touch(int row) {
+        seqCol[row] = nextChangeSeq++;
+        statusCol[row] = NOT_SYNCED;
+        logRow(row);
+    }
+
+    private void delete(int row) {
+        index.remove(key(tagCol[row], readerCol[row]));
+        statusCol[row] = DEAD;
+        liveRows--;
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        }
+        freeRows[freeCount++] = row;
+        int at = beginRecord(16);
+        log.put(at + 4, OP_DELETE);
+        log.putInt(at + 8, row);
+        commitRecord(at, 16);
+    }
+
+    @Override
+    public synchronized void deleteAll() {
+        clearState();
+        int at = beginRecord(8);
+        log.put(at + 4, OP_CLEAR);
+        commitRecord(at, 8);
+    }
+
+    @Override
+    public void dropEvent(String name) {
+        if (eventName.equals(name)) {
+            deleteAll();
+            return;
+        }
+        Path other = baseDir.resolve(name);
+        if (!Files.isDirectory(other)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(other)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+            Files.delete(other);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to drop event " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void deleteByReaderIps(List<String> readerIps) {
+        if (readerIps == null || readerIps.isEmpty()) {
+            return;
+        }
+        boolean[] readers = readerMask(readerIps);
+        for (int row = 0; row < rowCount; row++) {
+            if (statusCol[row] != DEAD && readers[readerCol[row]]) {
+                delete(row);
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<TagDetail> deleteSynced(List<String> readerIps, List<TagDetail> sent,
+                                                     boolean latestPerTag) {
+        if (sent == null || sent.isEmpty()) {
+            return List.of();
+        }
+        boolean[] readers = readerMask(readerIps);
+        // Last seen of each sent tag that was still unchanged, bounding the rows it superseded
+        Map<Integer, Long> sentLastSeen = new HashMap<>();
+        List<TagDetail> deleted = new ArrayList<>();
+        for (TagDetail tag : sent) {
+            int row = (int) tag.getId() - 1;
+            if (row >= 0 && row < rowCount && statusCol[row] != DEAD && readers[readerCol[row]]
+                    && seqCol[row] == tag.getChangeSeq()) {
+                sentLastSeen.merge(tagCol[row], lastCol[row], Math::max);
+                deleted.add(toTagDetail(row));
+                delete(row);
+            }
+        }
+        if (latestPerTag && !sentLastSeen.isEmpty()) {
+            for (int row = 0; row < rowCount; row++) {
+                if (statusCol[row] == DEAD || !readers[readerCol[row]]) continue;
+                Long upTo = sentLastSeen.get(tagCol[row]);
+                if (upTo != null && lastCol[row] <= upTo) {
+                    deleted.add(toTagDetail(row));
+                    delete(row);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized int markSynced(List<TagDetail> tags) {
+        if (tags == null) {
+            return 0;
+        }
+        int marked = 0;
+        for (TagDetail tag : tags) {
+            int row = (int) tag.getId() - 1;
+            // A row whose change_seq moved on changed again and stays NOT_SYNCED
+            if (row >= 0 && row < rowCount && statusCol[row] == NOT_SYNCED && seqCol[row] == tag.getChangeSeq()) {
+                statusCol[row] = SYNCED;
+                logRow(row);
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    // ----------------------------------------------------------------- reads
+
+    @Override
+    public synchronized Optional<TagDetail> findByTagIdAndReader(String tagId, String reader) {
+        Integer tag = stringIds.get(tagId);
+        Integer rd = stringIds.get(reader);
+        if (tag == null || rd == null) {
+            return Optional.empty();
+        }
+        int row = index.get(key(tag, rd));
+        return row < 0 ? Optional.empty() : Optional.of(toTagDetail(row));
+    }
+
+    @Override
+    public List<TagDetail> findAll() {
+        List<TagDetail> all = new ArrayList<>();
+        forEachTag(tag -> all.add(tag));
+        return all;
+    }
+
+    @Override
+    public long forEachTag(TagVisitor visitor) {
+        int[] rows;
+        synchronized (this) {
+            rows = new int[liveRows];
+            int n = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (statusCol[row] != DEAD) rows[n++] = row;
+            }
+        }
+        return visitRows(rows, visitor);
+    }
+
+    @Override
+    public long forEachTagByReaders(List<String> readerIps, boolean latestPerTag, String afterTagId, String toTagId,
+                                    TagVisitor visitor) {
+        int[] rows;
+        synchronized (this) {
+            rows = selectRows(readerMask(readerIps), afterTagId, toTagId, latestPerTag, true);
+        }
+        return visitRows(rows, visitor);
+    }
+
+    @Override
+    public long forEachTagByLap(Map<Integer, List<String>> lapIpMap, boolean latestPerTag, LapTagVisitor visitor) {
+        long visited = 0;
+        for (Map.Entry<Integer, List<String>> lap : new TreeMap<>(lapIpMap).entrySet()) {
+            int[] rows;
+            synchronized (this) {
+                rows = selectRows(readerMask(lap.getValue()), null, null, latestPerTag, latestPerTag);
+            }
+            boolean[] stopped = {false};
+            visited += visitRows(rows, tag -> {
+                if (!visitor.visit(lap.getKey(), tag)) {
+                    stopped[0] = true;
+                    return false;
+                }
+                return true;
+            });
+            if (stopped[0]) break;
+        }
+        return visited;
+    }
+
+    @Override
+    public synchronized Map<Integer, List<String>> findTagIdBoundaries(Map<Integer, List<String>> lapIpMap,
+                                                                       boolean latestPerTag, int chunkSize) {
+        int step = Math.max(1, chunkSize);
+        Map<Integer, List<String>> boundaries = new TreeMap<>();
+        lapIpMap.forEach((lap, ips) -> {
+            boolean[] readers = readerMask(ips);
+            List<String> tagIds = new ArrayList<>();
+            for (int row = 0; row < rowCount; row++) {
+                if (statusCol[row] != DEAD && readers[readerCol[row]]) tagIds.add(strings[tagCol[row]]);
+            }
+            if (tagIds.isEmpty()) return;
+            tagIds.sort(null);
+            if (latestPerTag) {
+                tagIds = distinctSorted(tagIds);
+            }
+            // Every chunkSize-th tag_id plus the last one, so (previous, boundary] ranges cover the lap
+            List<String> picked = new ArrayList<>();
+            for (int i = 0; i < tagIds.size(); i++) {
+                if ((i + 1) % step == 0 || i == tagIds.size() - 1) picked.add(tagIds.get(i));
+            }
+            boundaries.put(lap, distinctSorted(picked));
+        });
+        return boundaries;
+    }
+
+    @Override
+    public synchronized long countAll() {
+        return liveRows;
+    }
+
+    @Override
+    public synchronized long countByReaders(List<String> readerIps) {
+        boolean[] readers = readerMask(readerIps);
+        long count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (statusCol[row] != DEAD && readers[readerCol[row]]) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized List<TagDetail> fetchUnsyncedIpTags() {
+        boolean[] seen = new boolean[stringCount];
+        for (int row = 0; row < rowCount; row++) {
+            if (statusCol[row] != DEAD) seen[readerCol[row]] = true;
+        }
+        List<String> readers = new ArrayList<>();
+        for (int id = 0; id < stringCount; id++) {
+            if (seen[id]) readers.add(strings[id]);
+        }
+        readers.sort(null);
+        List<TagDetail> tagDetails = new ArrayList<>();
+        for (String reader : readers) {
+            TagDetail tagDetail = new TagDetail();
+            tagDetail.setReader(reader);
+            tagDetails.add(tagDetail);
+        }
+        return tagDetails;
+    }
+
+    @Override
+    public synchronized List<TagDetail> fetchChangedTags(List<String> readerIps, long afterChangeSeq, int limit) {
+        boolean[] readers = readerMask(readerIps);
+        List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (statusCol[row] == NOT_SYNCED && seqCol[row] > afterChangeSeq && readers[readerCol[row]]) {
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.comparingLong(row -> seqCol[row]));
+        List<TagDetail> changed = new ArrayList<>(Math.min(limit, rows.size()));
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            changed.add(toTagDetail(rows.get(i)));
+        }
+        return changed;
+    }
+
+    /** Writes a checkpoint and releases the log; further calls fail. */
+    @Override
+    public synchronized void close() {
+        if (log == null) return;
+        try {
+            checkpoint();
+            logChannel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to checkpoint embedded tag storage: " + e.getMessage());
+        }
+        log = null;
+    }
+
+    // --------------------------------------------------------------- helpers
+
+    /** Live rows of the given readers in tag_id range, optionally sorted and reduced to the latest per tag. */
+    private int[] selectRows(boolean[] readers, String afterTagId, String toTagId, boolean latestPerTag,
+                             boolean sorted) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (statusCol[row] != DEAD && readers[readerCol[row]] && inRange(row, afterTagId, toTagId)) {
+                rows.add(row);
+            }
+        }
+        if (sorted || latestPerTag) {
+            Comparator<Integer> byTag = Comparator.comparing(row -> strings[tagCol[row]]);
+            rows.sort(latestPerTag ? byTag.thenComparing(row -> -lastCol[row]) : byTag);
+        }
+        int[] result = new int[rows.size()];
+        int n = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.get(i);
+            if (latestPerTag && n > 0 && tagCol[result[n - 1]] == tagCol[row]) continue;
+            result[n++] = row;
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /** Materialises rows a block at a time under the lock and visits them outside it. */
+    private long visitRows(int[] rows, TagVisitor visitor) {
+        long visited = 0;
+        List<TagDetail> block = new ArrayList<>(VISIT_BLOCK);
+        for (int from = 0; from < rows.length; from += VISIT_BLOCK) {
+            block.clear();
+            synchronized (this) {
+                for (int i = from; i < rows.length && i < from + VISIT_BLOCK; i++) {
+                    if (statusCol[rows[i]] != DEAD) block.add(toTagDetail(rows[i]));
+                }
+            }
+            for (TagDetail tag : block) {
+                visited++;
+                if (!visitor.visit(tag)) return visited;
+            }
+        }
+        return visited;
+    }
+
+    private static List<String> distinctSorted(List<String> sorted) {
+        List<String> distinct = new ArrayList<>(sorted.size());
+        for (String s : sorted) {
+            if (distinct.isEmpty() || !distinct.get(distinct.size() - 1).equals(s)) distinct.add(s);
+        }
+        return distinct;
+    }
+
+    private boolean inRange(int row, String afterTagId, String toTagId) {
+        if (afterTagId == null && toTagId == null) return true;
+        String tagId = strings[tagCol[row]];
+        return (afterTagId == null || tagId.compareTo(afterTagId) > 0)
+                && (toTagId == null || tagId.compareTo(toTagId) <= 0);
+    }
+
+    private boolean[] readerMask(List<String> readerIps) {
+        boolean[] mask = new boolean[stringCount];
+        for (String ip : readerIps) {
+            Integer id = stringIds.get(ip);
+            if (id != null) mask[id] = true;
+        }
+        return mask;
+    }
+
+    private TagDetail toTagDetail(int row) {
+        TagDetail tag = new TagDetail(strings[tagCol[row]], antennaCol[row], instant(firstCol[row]),
+                instant(lastCol[row]), strings[readerCol[row]]);
+        tag.setStatus(statusCol[row] == SYNCED ? TagStatus.SYNCED : TagStatus.NOT_SYNCED);
+        tag.setId(row + 1L);
+        tag.setChangeSeq(seqCol[row]);
+        return tag;
+    }
+
+    private int intern(String value) {
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (value.length() > MAX_STRING) {
+            throw new IllegalArgumentException("Value longer than " + MAX_STRING + " characters: " + value);
+        }
+        int newId = stringCount;
+        putString(newId, value);
+        int size = align(16 + value.length() * 2);
+        int at = beginRecord(size);
+        log.put(at + 4, OP_STRING);
+        log.putInt(at + 8, newId);
+        log.putInt(at + 12, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            log.putChar(at + 16 + i * 2, value.charAt(i));
+        }
+        commitRecord(at, size);
+        return newId;
+    }
+
+    private void putString(int id, String value) {
+        if (id >= strings.length) {
+            strings = Arrays.copyOf(strings, Math.max(id + 1, strings.length * 2));
+        }
+        strings[id] = value;
+        stringIds.put(value, id);
+        stringCount = Math.max(stringCount, id + 1);
+    }
+
+    private void ensureRows(int size) {
+        if (size <= tagCol.length) return;
+        int capacity = Math.max(size, tagCol.length * 2);
+        tagCol = Arrays.copyOf(tagCol, capacity);
+        readerCol = Arrays.copyOf(readerCol, capacity);
+        antennaCol = Arrays.copyOf(antennaCol, capacity);
+        firstCol = Arrays.copyOf(firstCol, capacity);
+        lastCol = Arrays.copyOf(lastCol, capacity);
+        seqCol = Arrays.copyOf(seqCol, capacity);
+        statusCol = Arrays.copyOf(statusCol, capacity);
+    }
+
+    private void clearState() {
+        Arrays.fill(statusCol, 0, rowCount, DEAD);
+        rowCount = 0;
+        liveRows = 0;
+        freeCount = 0;
+        index.clear();
+    }
+
+    private static long key(int tag, int reader) {
+        return ((long) tag << 32) | (reader & 0xFFFF_FFFFL);
+    }
+
+    private static long micros(Instant instant) {
+        return instant == null ? NO_TIME : instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+
+    private static Instant instant(long micros) {
+        return micros == NO_TIME ? null : TagDetail.instantOfMicros(micros);
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    // ------------------------------------------------------------ redo log
+
+    private void logRow(int row) {
+        int at = beginRecord(ROW_RECORD);
+        log.put(at + 4, OP_ROW);
+        log.put(at + 5, statusCol[row]);
+        log.putInt(at + 8, row);
+        log.putInt(at + 12, tagCol[row]);
+        log.putInt(at + 16, readerCol[row]);
+        log.putInt(at + 20, antennaCol[row]);
+        log.putLong(at + 24, firstCol[row]);
+        log.putLong(at + 32, lastCol[row]);
+        log.putLong(at + 40, seqCol[row]);
+        commitRecord(at, ROW_RECORD);
+    }
+
+    /** Reserves {@code size} bytes, checkpointing into a fresh log first if they don't fit. */
+    private int beginRecord(int size) {
+        if (log == null) {
+            throw new IllegalStateException("Embedded tag storage is closed");
+        }
+        if (logPos + size + 4 > log.capacity()) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to checkpoint embedded tag storage: " + e.getMessage(), e);
+            }
+        }
+        return logPos;
+    }
+
+    /** The length is written last: a record only exists once it is complete. */
+    private void commitRecord(int at, int size) {
+        log.putInt(at, size);
+        logPos = at + size;
+    }
+
+    private void checkpoint() throws IOException {
+        long newGen = logGen + 1;
+        // Changes made while the snapshot is written go to the new log, which recovery replays on top of it
+        openLog(newGen, false);
+
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(newGen);
+            out.writeLong(nextChangeSeq);
+            out.writeInt(stringCount);
+            for (int id = 0; id < stringCount; id++) {
+                out.writeUTF(strings[id]);
+            }
+            out.writeInt(rowCount);
+            out.writeInt(liveRows);
+            for (int row = 0; row < rowCount; row++) {
+                if (statusCol[row] == DEAD) continue;
+                out.writeInt(row);
+                out.writeInt(tagCol[row]);
+                out.writeInt(readerCol[row]);
+                out.writeInt(antennaCol[row]);
+                out.writeLong(firstCol[row]);
+                out.writeLong(lastCol[row]);
+                out.writeLong(seqCol[row]);
+                out.writeByte(statusCol[row]);
+            }
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        deleteLogsBefore(newGen);
+    }
+
+    private void recover() throws IOException {
+        long firstGen = 0;
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint),
+                    1 << 16))) {
+                if (in.readInt() != CHECKPOINT_MAGIC) {
+                    throw new IOException("Not a tag storage checkpoint: " + checkpoint);
+                }
+                firstGen = in.readLong();
+                nextChangeSeq = in.readLong();
+                int strings = in.readInt();
+                for (int id = 0; id < strings; id++) {
+                    putString(id, in.readUTF());
+                }
+                rowCount = in.readInt();
+                ensureRows(rowCount);
+                int live = in.readInt();
+                for (int i = 0; i < live; i++) {
+                    int row = in.readInt();
+                    tagCol[row] = in.readInt();
+                    readerCol[row] = in.readInt();
+                    antennaCol[row] = in.readInt();
+                    firstCol[row] = in.readLong();
+                    lastCol[row] = in.readLong();
+                    seqCol[row] = in.readLong();
+                    statusCol[row] = in.readByte();
+                    index.put(key(tagCol[row], readerCol[row]), row);
+                }
+                liveRows = live;
+            }
+        }
+
+        long gen = firstGen;
+        int end = 0;
+        for (long g : logGens()) {
+            if (g < firstGen) continue;
+            gen = g;
+            end = replay(g);
+        }
+        for (int row = rowCount - 1; row >= 0; row--) {
+            if (statusCol[row] == DEAD) {
+                if (freeCount == freeRows.length) freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+                freeRows[freeCount++] = row;
+            }
+        }
+        openLog(gen, true);
+        // Anything after the last complete record is a torn write; clear it so it can't be misread later
+        for (int i = end; i < log.capacity(); i += 8) {
+            if (log.getLong(i) != 0) log.putLong(i, 0);
+        }
+        logPos = end;
+        deleteLogsBefore(firstGen);
+    }
+
+    private int replay(long gen) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(logPath(gen), StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        int pos = 0;
+        while (pos + 8 <= buf.capacity()) {
+            int size = buf.getInt(pos);
+            if (size <= 0 || pos + size > buf.capacity()) break;
+            switch (buf.get(pos + 4)) {
+                case OP_STRING -> {
+                    int id = buf.getInt(pos + 8);
+                    char[] chars = new char[buf.getInt(pos + 12)];
+                    for (int i = 0; i < chars.length; i++) chars[i] = buf.getChar(pos + 16 + i * 2);
+                    putString(id, new String(chars));
+                }
+                case OP_ROW -> {
+                    int row = buf.getInt(pos + 8);
+                    ensureRows(row + 1);
+                    if (statusCol[row] == DEAD) liveRows++;
+                    else index.remove(key(tagCol[row], readerCol[row]));
+                    statusCol[row] = buf.get(pos + 5);
+                    tagCol[row] = buf.getInt(pos + 12);
+                    readerCol[row] = buf.getInt(pos + 16);
+                    antennaCol[row] = buf.getInt(pos + 20);
+                    firstCol[row] = buf.getLong(pos + 24);
+                    lastCol[row] = buf.getLong(pos + 32);
+                    seqCol[row] = buf.getLong(pos + 40);
+                    index.put(key(tagCol[row], readerCol[row]), row);
+                    rowCount = Math.max(rowCount, row + 1);
+                    nextChangeSeq = Math.max(nextChangeSeq, seqCol[row] + 1);
+                }
+                case OP_DELETE -> {
+                    int row = buf.getInt(pos + 8);
+                    if (row < rowCount && statusCol[row] != DEAD) {
+                        index.remove(key(tagCol[row], readerCol[row]));
+                        statusCol[row] = DEAD;
+                        liveRows--;
+                    }
+                }
+                case OP_CLEAR -> clearState();
+                default -> throw new IOException("Corrupt tag storage log " + logPath(gen) + " at " + pos);
+            }
+            pos += size;
+        }
+        return pos;
+    }
+
+    private void openLog(long gen, boolean existing) throws IOException {
+        if (logChannel != null) {
+            logChannel.close();
+        }
+        logChannel = FileChannel.open(logPath(gen), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = existing ? Math.max(logBytes, logChannel.size()) : logBytes;
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        logGen = gen;
+        logPos = 0;
+    }
+
+    private void deleteLogsBefore(long gen) throws IOException {
+        for (long g : logGens()) {
+            if (g < gen) Files.deleteIfExists(logPath(g));
+        }
+    }
+
+    private Path logPath(long gen) {
+        return dir.resolve(String.format("%020d%s", gen, LOG_SUFFIX));
+    }
+
+    private List<Long> logGens() throws IOException {
+        List<Long> gens = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(LOG_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            gens.add(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    });
+        }
+        gens.sort(null);
+        return gens;
+    }
+
+    /** Open-addressing long -> int map with linear probing and backward-shift deletion. */
+    static final class LongIntMap {
+        private static final long EMPTY = -1L;
+
+        private long[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+
+        LongIntMap(int capacity) {
+            allocate(Integer.highestOneBit(Math.max(16, capacity) - 1) << 1);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+
+        int get(long key) {
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) return values[i];
+                if (k == EMPTY) return -1;
+            }
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    values[i] = value;
+                    return;
+                }
+                if (k == EMPTY) {
+                    keys[i] = key;
+                    values[i] = value;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        void remove(long key) {
+            int gap = hash(key) & mask;
+            while (keys[gap] != key) {
+                if (keys[gap] == EMPTY) return;
+                gap = (gap + 1) & mask;
+            }
+            size--;
+            // Pull later entries of the probe chain back so lookups never stop early
+            for (int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = EMPTY;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(capacity);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -3,16 +3,39 @@ package com.rfid;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
 
 public class GenerateReport {
 
+    public static final int DEFAULT_ROW_WINDOW = 500;
+
     private final static String HEADERS[] = {"tagId","firstSeen","lastSeen","antenna"};
+    private final static String STREAMING_HEADERS[] = {"tagId","firstSeen","lastSeen","antenna","reader"};
+    private static final int MAX_SHEET_ROWS = 1_048_576;
+
+    private final int rowWindow;
+
+    public GenerateReport() {
+        this(DEFAULT_ROW_WINDOW);
+    }
+
+    public GenerateReport(int rowWindow) {
+        this.rowWindow = Math.max(1, rowWindow);
+    }
 
     public ByteArrayInputStream generateCustomerReport(List<TagDetail> tags) {
         try (Workbook workbook = new XSSFWorkbook();
@@ -35,6 +58,47 @@ public class GenerateReport {
         }
     }
 
+    /**
+     * Streams every stored tag into an XLSX written straight to {@code out}. Only
+     * {@code rowWindow} rows per sheet stay in memory; older rows are flushed to
+     * compressed temp files. Besides the "tags" sheet, each reader gets its own
+     * sheet, and so does each lap in {@code lapIpMap} (which may be empty).
+     * Returns the number of tags written.
+     */
+    public long generateStreamingReport(TagStorage storage, Map<Integer, List<String>> lapIpMap, OutputStream out,
+                                        LongConsumer onRow, BooleanSupplier cancelled) throws IOException {
+        // A reader may be mapped to several laps, and its tags go on each of them
+        Map<String, List<Integer>> readerToLaps = new HashMap<>();
+        lapIpMap.forEach((lap, ips) -> ips.forEach(ip ->
+                readerToLaps.computeIfAbsent(ip, reader -> new ArrayList<>()).add(lap)));
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        try {
+            SheetWriter allTags = new SheetWriter(workbook, "tags");
+            Map<String, SheetWriter> readerSheets = new LinkedHashMap<>();
+            Map<Integer, SheetWriter> lapSheets = new LinkedHashMap<>();
+            long[] written = {0};
+
+            storage.forEachTag(tag -> {
+                allTags.append(tag);
+                readerSheets.computeIfAbsent(String.valueOf(tag.getReader()),
+                        reader -> new SheetWriter(workbook, "reader " + reader)).append(tag);
+                for (Integer lap : readerToLaps.getOrDefault(tag.getReader(), List.of())) {
+                    lapSheets.computeIfAbsent(lap, l -> new SheetWriter(workbook, "lap " + l)).append(tag);
+                }
+                onRow.accept(++written[0]);
+                return !cancelled.getAsBoolean();
+            });
+
+            workbook.write(out);
+            return written[0];
+        } finally {
+            // close() also deletes the temp files
+            workbook.close();
+        }
+    }
+
     private static void generateSheetCells(List<TagDetail> customers, Sheet sheet) {
         int rowIndex = 1;
         for (TagDetail c : customers) {
@@ -45,4 +109,40 @@ public class GenerateReport {
             dataRow.createCell(3).setCellValue(c.getAntenna());
         }
     }
-}
\ No newline at end of file
+
+    /** Appends rows to a sheet, continuing on "name (2)", "name (3)"... past Excel's row limit. */
+    private static final class SheetWriter {
+        private final Workbook workbook;
+        private final String baseName;
+        private Sheet sheet;
+        private int part = 1;
+        private int rowIndex;
+
+        SheetWriter(Workbook workbook, String baseName) {
+            this.workbook = workbook;
+            this.baseName = baseName;
+            openSheet(baseName);
+        }
+
+        void append(TagDetail tag) {
+            if (rowIndex == MAX_SHEET_ROWS) {
+                openSheet(baseName + " (" + (++part) + ")");
+            }
+            Row row = sheet.createRow(rowIndex++);
+            row.createCell(0).setCellValue(tag.getTagId());
+            row.createCell(1).setCellValue(tag.getFirstSeen() != null ? tag.getFirstSeen().toString() : "");
+            row.createCell(2).setCellValue(tag.getLastSeen() != null ? tag.getLastSeen().toString() : "");
+            row.createCell(3).setCellValue(tag.getAntenna());
+            row.createCell(4).setCellValue(tag.getReader());
+        }
+
+        private void openSheet(String name) {
+            sheet = workbook.createSheet(WorkbookUtil.createSafeSheetName(name));
+            Row headerRow = sheet.createRow(0);
+            for (int i = 0; i < STREAMING_HEADERS.length; i++) {
+                headerRow.createCell(i).setCellValue(STREAMING_HEADERS[i]);
+            }
+            rowIndex = 1;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.rfid;
+
+import com.impinj.octane.*;
+
+import java.util.List;
+
+/** A physical Impinj reader driven through the Octane SDK. */
+public class ImpinjReaderSource implements ReaderSource {
+    // Keepalives missed before the link counts as down, on the reader and here
+    private static final int LINK_DOWN_THRESHOLD = 3;
+    // The EPC itself starts after the CRC and protocol control words of the EPC bank
+    private static final int EPC_BIT_POINTER = 32;
+
+    private final Util util;
+    private final long keepaliveMillis;
+    private ImpinjReader reader;
+    private String address;
+    private ReadListener listener;
+    private Settings settings;
+    private volatile ReaderProfile profile = ReaderProfile.defaults();
+    private Thread watchdog;
+    private volatile long lastKeepaliveNanos;
+    private volatile boolean lost = false;
+    private volatile boolean started = false;
+    private volatile boolean closing = false;
+    // Reader clock minus host clock, from the last read that moved the reader's newest timestamp forward
+    private volatile long clockOffsetMicros = 0;
+    private volatile long newestReaderMicros = Long.MIN_VALUE;
+
+    public ImpinjReaderSource(Util util) {
+        this(util, ReaderLifecycle.DEFAULT_KEEPALIVE_MILLIS);
+    }
+
+    public ImpinjReaderSource(Util util, long keepaliveMillis) {
+        this.util = util;
+        this.keepaliveMillis = keepaliveMillis;
+    }
+
+    @Override
+    public void connect(String address, ReadListener listener) throws OctaneSdkException {
+        this.address = address;
+        this.listener = listener;
+        reader = new ImpinjReader();
+        reader.connect(address);
+
+        if (!reader.isConnected()) {
+            throw new RuntimeException("Could not connect to reader: " + address);
+        }
+
+        settings = reader.queryDefaultSettings();
+        configureReader(settings);
+        reader.applySettings(settings);
+
+        reader.setConnectionLostListener(r -> connectionLost());
+        reader.setKeepaliveListener((r, event) -> lastKeepaliveNanos = System.nanoTime());
+        lastKeepaliveNanos = System.nanoTime();
+        watchdog = Thread.ofVirtual().name("Keepalive-" + address).start(this::watchKeepalives);
+
+        reader.setTagReportListener((r, report) -> {
+            long hostMicros = System.currentTimeMillis() * 1_000;
+            for (Tag tag : report.getTags()) {
+                // The reader's own timestamps; the host clock only when the report lacks them
+                long firstMicros = tag.isFirstSeenTimePresent()
+                        ? tag.getFirstSeenTime().getUtcTimestamp().longValue() : hostMicros;
+                long lastMicros = tag.isLastSeenTimePresent()
+                        ? tag.getLastSeenTime().getUtcTimestamp().longValue() : firstMicros;
+                if (tag.isLastSeenTimePresent() && lastMicros > newestReaderMicros) {
+                    // Held reads arrive late and understate it, but only until the next live read
+                    newestReaderMicros = lastMicros;
+                    clockOffsetMicros = lastMicros - hostMicros;
+                }
+                listener.onRead(tag.getEpc().toString(), tag.getAntennaPortNumber(), firstMicros, lastMicros,
+                        tag.getPeakRssiInDbm());
+            }
+        });
+    }
+
+    private void configureReader(Settings settings) throws OctaneSdkException {
+        ReaderProfile profile = this.profile;
+        if (profile.getReaderMode() != null) settings.setReaderMode(ReaderMode.valueOf(profile.getReaderMode()));
+        if (profile.getSearchMode() != null) settings.setSearchMode(SearchMode.valueOf(profile.getSearchMode()));
+        if (profile.getSession() != null) settings.setSession(profile.getSession());
+        if (profile.getTagPopulationEstimate() != null) {
+            settings.setTagPopulationEstimate(profile.getTagPopulationEstimate());
+        }
+
+        ReportConfig report = settings.getReport();
+        report.setIncludeAntennaPortNumber(true);
+        report.setIncludeFirstSeenTime(profile.isIncludeFirstSeenTime());
+        report.setIncludeLastSeenTime(profile.isIncludeLastSeenTime());
+        report.setIncludePeakRssi(profile.isIncludePeakRssi());
+        report.setIncludeSeenCount(profile.isIncludeSeenCount());
+        report.setIncludePhaseAngle(profile.isIncludePhaseAngle());
+        report.setMode(ReportMode.Individual);
+
+        // The reader keeps inventorying through a network drop and replays what it read on resume
+        settings.setHoldReportsOnDisconnect(true);
+        Keepalives keepalives = settings.getKeepalives();
+        keepalives.setEnabled(true);
+        keepalives.setPeriodInMs(keepaliveMillis);
+        keepalives.setEnableLinkMonitorMode(true);
+        keepalives.setLinkDownThreshold(LINK_DOWN_THRESHOLD);
+
+        AntennaConfigGroup antennas = settings.getAntennas();
+        antennas.disableAll();
+
+        for (ReaderProfile.Antenna antenna : profile.getAntennas()) {
+            AntennaConfig config = antennas.getAntenna(antenna.getPort());
+            config.setEnabled(true);
+            config.setTxPowerinDbm(antenna.getTxPowerDbm());
+            config.setRxSensitivityinDbm(antenna.getRxSensitivityDbm());
+            util.addLog(String.format("Enabled antenna %d (%.1f dBm, %.0f dBm sensitivity)",
+                    antenna.getPort(), antenna.getTxPowerDbm(), antenna.getRxSensitivityDbm()));
+        }
+
+        // Filtering on the reader keeps stray tags off the network entirely
+        FilterSettings filters = settings.getFilters();
+        List<String> prefixes = profile.getEpcPrefixes();
+        for (int i = 0; i < prefixes.size(); i++) {
+            String prefix = prefixes.get(i);
+            TagFilter filter = i == 0 ? filters.getTagFilter1() : filters.getTagFilter2();
+            filter.setMemoryBank(MemoryBank.Epc);
+            filter.setBitPointer(EPC_BIT_POINTER);
+            filter.setBitCount(prefix.length() * 4);
+            filter.setTagMask(prefix);
+            filter.setFilterOp(TagFilterOp.Match);
+        }
+        filters.setMode(prefixes.isEmpty() ? TagFilterMode.None
+                : prefixes.size() == 1 ? TagFilterMode.OnlyFilter1 : TagFilterMode.Filter1OrFilter2);
+    }
+
+    @Override
+    public void applyProfile(ReaderProfile profile) throws OctaneSdkException {
+        this.profile = profile;
+        if (reader == null || !reader.isConnected()) {
+            return;
+        }
+        Settings updated = reader.queryDefaultSettings();
+        configureReader(updated);
+        // Settings can't change under a running inventory, so it pauses only for the apply
+        boolean running = started;
+        if (running) reader.stop();
+        reader.applySettings(updated);
+        settings = updated;
+        if (running) reader.start();
+    }
+
+    // The SDK only notices a dead socket; a silent link is caught by the missing keepalives
+    private void watchKeepalives() {
+        long limitNanos = LINK_DOWN_THRESHOLD * keepaliveMillis * 1_000_000;
+        while (!closing) {
+            try {
+                Thread.sleep(keepaliveMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!lost && System.nanoTime() - lastKeepaliveNanos > limitNanos) {
+                util.addLog("⚠ No keepalive from " + address + " for " + LINK_DOWN_THRESHOLD * keepaliveMillis + " ms");
+                connectionLost();
+            }
+        }
+    }
+
+    private synchronized void connectionLost() {
+        if (lost || closing) return;
+        lost = true;
+        listener.onConnectionLost();
+    }
+
+    @Override
+    public void reconnect() throws OctaneSdkException {
+        try {
+            reader.disconnect();
+        } catch (RuntimeException ignored) {
+            // Already gone
+        }
+        reader.connect(address);
+        try {
+            reader.resumeEventsAndReports();
+        } catch (OctaneSdkException e) {
+            // The reader restarted and lost its settings and anything it held
+            util.addLog("⚠ " + address + " could not resume, reapplying settings: " + e.getMessage());
+            newestReaderMicros = Long.MIN_VALUE;
+            reader.applySettings(settings);
+            if (started) reader.start();
+        }
+        lastKeepaliveNanos = System.nanoTime();
+        lost = false;
+        // Held reads are stamped by the reader, so the resume point must be on its clock too;
+        // before the first read the offset is unknown and this is the host clock
+        listener.onResumed(System.currentTimeMillis() * 1_000 + clockOffsetMicros);
+    }
+
+    @Override
+    public void start() throws OctaneSdkException {
+        reader.start();
+        started = true;
+    }
+
+    @Override
+    public void stop() throws OctaneSdkException {
+        started = false;
+        reader.stop();
+    }
+
+    @Override
+    public void disconnect() {
+        closing = true;
+        if (watchdog != null) watchdog.interrupt();
+        reader.disconnect();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return reader != null && reader.isConnected();
+    }
+
+    @Override
+    public String getAddress() {
+        return reader.getAddress();
+    }
+}
@@ -0,0 +1,392 @@
+package com.rfid;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small bounded JDBC connection pool. Connections handed out are proxies: closing
+ * one returns it to the pool, and {@code prepareStatement(sql)} is served from a
+ * per-connection statement cache so repeated queries skip the parse round trip.
+ */
+public class JdbcConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_MAX_SIZE = 12;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 5_000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300_000;
+    public static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 30_000;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int statementCacheSize;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    public JdbcConnectionPool(String jdbcUrl, String username, String password) {
+        this(jdbcUrl, username, password, DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT_MILLIS,
+                DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_VALIDATION_INTERVAL_MILLIS, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public JdbcConnectionPool(String jdbcUrl, String username, String password,
+                              int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis,
+                              long validationIntervalMillis, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.jdbcUrl = jdbcUrl;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "JdbcPool-Evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, Math.min(idleTimeoutMillis, 60_000) / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static JdbcConnectionPool fromConfig(AppConfig config, String jdbcUrl, String username, String password) {
+        return new JdbcConnectionPool(jdbcUrl, username, password,
+                config.getInt("pool.maxSize", DEFAULT_MAX_SIZE),
+                config.getLong("pool.borrowTimeoutMillis", DEFAULT_BORROW_TIMEOUT_MILLIS),
+                config.getLong("pool.idleTimeoutMillis", DEFAULT_IDLE_TIMEOUT_MILLIS),
+                config.getLong("pool.validationIntervalMillis", DEFAULT_VALIDATION_INTERVAL_MILLIS),
+                config.getInt("pool.statementCacheSize", DEFAULT_STATEMENT_CACHE_SIZE));
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!acquired) {
+            exhausted.increment();
+            String message = "Connection pool exhausted: no connection free after "
+                    + borrowTimeoutMillis + " ms (max " + maxSize + ")";
+            System.err.println("⚠ " + message + " - " + getStats());
+            throw new SQLException(message, "08001");
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(jdbcUrl, username, password));
+                created.increment();
+            }
+            borrows.increment();
+            peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            pooled.closePhysical();
+            evicted.increment();
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < validationIntervalMillis) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.broken || pooled.connection.isClosed()) {
+                pooled.closePhysical();
+                return;
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            pooled.closePhysical();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.lastUsed >= idleTimeoutMillis && idle.remove(pooled)) {
+                pooled.closePhysical();
+                evicted.increment();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closePhysical();
+        }
+    }
+
+    public Stats getStats() {
+        long borrowCount = borrows.sum();
+        double avgWaitMillis = borrowCount == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / borrowCount;
+        return new Stats(active.get(), idle.size(), maxSize, peakActive.get(), borrowCount,
+                avgWaitMillis, maxWaitNanos.get() / 1_000_000.0, exhausted.sum(),
+                created.sum(), evicted.sum(), statementCacheHits.sum(), statementCacheMisses.sum());
+    }
+
+    public record Stats(int active, int idle, int maxSize, int peakActive, long borrows,
+                        double avgWaitMillis, double maxWaitMillis, long exhausted,
+                        long created, long evicted, long statementCacheHits, long statementCacheMisses) {
+        @Override
+        public String toString() {
+            return String.format("active=%d/%d (peak %d), idle=%d, borrows=%d, wait avg=%.2fms max=%.2fms, "
+                            + "exhausted=%d, created=%d, evicted=%d, stmt cache hits=%d misses=%d",
+                    active, maxSize, peakActive, idle, borrows, avgWaitMillis, maxWaitMillis,
+                    exhausted, created, evicted, statementCacheHits, statementCacheMisses);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isConnectionFailure(Throwable t) {
+        return t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08");
+    }
+
+    private final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, CachedStatement> statements;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean broken = false;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= statementCacheSize) return false;
+                    if (!eldest.getValue().inUse) {
+                        eldest.getValue().closeQuietly();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeaseHandler(this));
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            if (statementCacheSize == 0) {
+                return connection.prepareStatement(sql);
+            }
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.inUse) {
+                statementCacheHits.increment();
+                return cached.checkout();
+            }
+            statementCacheMisses.increment();
+            PreparedStatement ps = connection.prepareStatement(sql);
+            if (cached != null) {
+                // Same SQL already open on this connection; hand out an uncached one
+                return ps;
+            }
+            cached = new CachedStatement(this, ps);
+            statements.put(sql, cached);
+            return cached.checkout();
+        }
+
+        void closePhysical() {
+            statements.values().forEach(CachedStatement::closeQuietly);
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released = false;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.connection + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                if ("prepareStatement".equals(method.getName()) && args != null && args.length == 1) {
+                    return pooled.prepare((String) args[0]);
+                }
+                return JdbcConnectionPool.invoke(pooled.connection, method, args);
+            } catch (Throwable t) {
+                if (isConnectionFailure(t)) {
+                    pooled.broken = true;
+                }
+                throw t;
+            }
+        }
+    }
+
+    private static final class CachedStatement implements InvocationHandler {
+        private final PooledConnection owner;
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse = false;
+
+        CachedStatement(PooledConnection owner, PreparedStatement statement) {
+            this.owner = owner;
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        PreparedStatement checkout() {
+            inUse = true;
+            return proxy;
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        statement.clearParameters();
+                        statement.clearBatch();
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || statement.isClosed();
+                case "equals":
+                    return p == args[0];
+                case "hashCode":
+                    return System.identityHashCode(p);
+                default:
+                    break;
+            }
+            try {
+                return JdbcConnectionPool.invoke(statement, method, args);
+            } catch (Throwable t) {
+                if (isConnectionFailure(t)) {
+                    owner.broken = true;
+                }
+                throw t;
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.rfid;
+
+/** Receives rows streamed from a {@link TagStorage} cursor along with the lap of their reader. */
+@FunctionalInterface
+public interface LapTagVisitor {
+    /** Returns false to stop the scan early. */
+    boolean visit(int lapNumber, TagDetail tag);
+}
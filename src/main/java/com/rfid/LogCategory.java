@@ -0,0 +1,34 @@
+package com.rfid;
+
+/**
+ * Log message categories with their default rate limits. Summarised categories
+ * also get a once-per-second line with the number of events logged under them.
+ */
+public enum LogCategory {
+    GENERAL(50, false, null),
+    TAG_READ(0, true, "📡 %d tag reads in the last second"),
+    STORAGE(5, true, "💾 %d storage batches in the last second"),
+    SYNC(50, false, null);
+
+    private final int defaultMaxPerSecond;
+    private final boolean summarized;
+    private final String summaryFormat;
+
+    LogCategory(int defaultMaxPerSecond, boolean summarized, String summaryFormat) {
+        this.defaultMaxPerSecond = defaultMaxPerSecond;
+        this.summarized = summarized;
+        this.summaryFormat = summaryFormat;
+    }
+
+    public int getDefaultMaxPerSecond() {
+        return defaultMaxPerSecond;
+    }
+
+    public boolean isSummarized() {
+        return summarized;
+    }
+
+    public String getSummaryFormat() {
+        return summaryFormat;
+    }
+}
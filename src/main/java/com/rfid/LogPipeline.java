@@ -0,0 +1,144 @@
+package com.rfid;
+
+import javax.swing.Timer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.IllegalFormatException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collects log messages from any thread into a lock-free buffer and hands them
+ * to the UI in one chunk per frame. Messages are formatted on the EDT only if
+ * they get through the per-category rate limit; summarised categories report a
+ * per-second count instead of individual lines.
+ */
+public class LogPipeline {
+    public static final int DEFAULT_FLUSH_FPS = 10;
+
+    private static final int MAX_LINES_PER_FRAME = 500;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Queue<Entry> buffer = new ConcurrentLinkedQueue<>();
+    private final Consumer<String> sink;
+    private final int[] maxPerSecond;
+    private final AtomicInteger[] admitted;
+    private final LongAdder[] events;
+    private final LongAdder[] suppressed;
+    private final Timer timer;
+    private long windowStart = System.currentTimeMillis();
+
+    public LogPipeline(Consumer<String> sink) {
+        this(sink, DEFAULT_FLUSH_FPS, defaultLimits());
+    }
+
+    public LogPipeline(Consumer<String> sink, int flushFps, int[] maxPerSecond) {
+        int categories = LogCategory.values().length;
+        this.sink = sink;
+        this.maxPerSecond = maxPerSecond.clone();
+        this.admitted = new AtomicInteger[categories];
+        this.events = new LongAdder[categories];
+        this.suppressed = new LongAdder[categories];
+        for (int i = 0; i < categories; i++) {
+            admitted[i] = new AtomicInteger();
+            events[i] = new LongAdder();
+            suppressed[i] = new LongAdder();
+        }
+        this.timer = new Timer(1000 / Math.max(1, flushFps), e -> flush());
+        timer.start();
+    }
+
+    public static LogPipeline fromConfig(AppConfig config, Consumer<String> sink) {
+        int[] limits = defaultLimits();
+        for (LogCategory category : LogCategory.values()) {
+            limits[category.ordinal()] = config.getInt(
+                    "log." + category.name().toLowerCase() + ".maxPerSecond", limits[category.ordinal()]);
+        }
+        return new LogPipeline(sink, config.getInt("log.flushFps", DEFAULT_FLUSH_FPS), limits);
+    }
+
+    private static int[] defaultLimits() {
+        int[] limits = new int[LogCategory.values().length];
+        for (LogCategory category : LogCategory.values()) {
+            limits[category.ordinal()] = category.getDefaultMaxPerSecond();
+        }
+        return limits;
+    }
+
+    public void log(LogCategory category, String message) {
+        log(category, message, (Object[]) null);
+    }
+
+    /** The pattern is only run through {@link String#format} if the message is shown. */
+    public void log(LogCategory category, String pattern, Object... args) {
+        int i = category.ordinal();
+        events[i].increment();
+        if (admitted[i].incrementAndGet() > maxPerSecond[i]) {
+            if (!category.isSummarized()) {
+                suppressed[i].increment();
+            }
+            return;
+        }
+        buffer.add(new Entry(System.currentTimeMillis(), pattern, args));
+    }
+
+    // Runs on the EDT
+    private void flush() {
+        StringBuilder chunk = new StringBuilder();
+        Entry entry;
+        int lines = 0;
+        while (lines < MAX_LINES_PER_FRAME && (entry = buffer.poll()) != null) {
+            appendLine(chunk, entry.timestamp, entry.format());
+            lines++;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= 1000) {
+            windowStart = now;
+            for (LogCategory category : LogCategory.values()) {
+                int i = category.ordinal();
+                admitted[i].set(0);
+                long count = events[i].sumThenReset();
+                if (category.isSummarized() && count > 0) {
+                    appendLine(chunk, now, String.format(category.getSummaryFormat(), count));
+                }
+                long dropped = suppressed[i].sumThenReset();
+                if (dropped > 0) {
+                    appendLine(chunk, now, "⚠ " + dropped + " " + category.name() + " messages suppressed");
+                }
+            }
+        }
+
+        if (chunk.length() > 0) {
+            sink.accept(chunk.toString());
+        }
+    }
+
+    private static void appendLine(StringBuilder chunk, long timestamp, String message) {
+        chunk.append('[');
+        TIME_FORMAT.formatTo(Instant.ofEpochMilli(timestamp), chunk);
+        chunk.append("] ").append(message).append('\n');
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    private record Entry(long timestamp, String pattern, Object[] args) {
+        String format() {
+            if (args == null || args.length == 0) {
+                return pattern;
+            }
+            try {
+                return String.format(pattern, args);
+            } catch (IllegalFormatException e) {
+                return pattern;
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ public class MarathonPanel {
     private JTextField marathonNameField;
     private JSpinner lapNumberSpinner;
     private JButton syncButton;
+    private JCheckBox liveSyncCheckBox;
     private JLabel syncStatusLabel;
     private SyncHandler syncHandler;
     private JPanel ipTagsPanel;
@@ -186,8 +187,11 @@ public class MarathonPanel {
         return hasDuplicates;
     }
 
-    private Map<Integer, List<String>> getSelectedLapIpMap() {
+    public Map<Integer, List<String>> getSelectedLapIpMap() {
         Map<Integer, List<String>> lapToIPs = new HashMap<>();
+        if (ipTagsPanel == null) {
+            return lapToIPs;
+        }
 
         for (Component comp : ipTagsPanel.getComponents()) {
             if (comp instanceof JPanel) {
@@ -438,10 +442,36 @@ public class MarathonPanel {
             }
         });
 
+        // Live sync keeps pushing changed tags in the background until unticked
+        liveSyncCheckBox = new JCheckBox("Live sync");
+        liveSyncCheckBox.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        liveSyncCheckBox.setBackground(Color.WHITE);
+        liveSyncCheckBox.addActionListener(e -> toggleLiveSync());
+
         buttonPanel.add(syncButton);
+        buttonPanel.add(liveSyncCheckBox);
         return buttonPanel;
     }
 
+    private void toggleLiveSync() {
+        if (syncHandler == null) {
+            liveSyncCheckBox.setSelected(false);
+            return;
+        }
+        if (!liveSyncCheckBox.isSelected()) {
+            syncHandler.stopLiveSync();
+            return;
+        }
+        Map<Integer, List<String>> lapIpMap = getSelectedLapIpMap();
+        if (marathonNameField.getText().trim().isEmpty() || lapIpMap.isEmpty()) {
+            liveSyncCheckBox.setSelected(false);
+            syncStatusLabel.setText("Enter a marathon name and assign laps before starting live sync");
+            syncStatusLabel.setForeground(Color.ORANGE);
+            return;
+        }
+        syncHandler.startLiveSync(lapIpMap);
+    }
+
     public void refreshIpTagsPanel() {
         SwingUtilities.invokeLater(() -> loadUnsyncedIpTags());
     }
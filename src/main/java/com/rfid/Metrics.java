@@ -0,0 +1,270 @@
+package com.rfid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-process metrics, rendered in the Prometheus text format by {@link MetricsServer}.
+ * Look a series up once and keep it: registration takes a lock and builds label
+ * strings, while {@link Counter#inc()} and {@link Histogram#record(long)} are
+ * lock-free and allocate nothing, so they are safe on the reader threads.
+ */
+public class Metrics {
+    /** Bucket bounds, in seconds, for histograms recorded in nanoseconds. */
+    public static final double[] LATENCY_BUCKETS = {
+            0.000_01, 0.000_025, 0.000_05, 0.000_1, 0.000_25, 0.000_5,
+            0.001, 0.002_5, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120};
+    /** Bucket bounds, in bytes, for size histograms. */
+    public static final double[] SIZE_BUCKETS = {
+            1 << 10, 4 << 10, 16 << 10, 64 << 10, 256 << 10, 1 << 20, 4 << 20, 16 << 20, 64 << 20, 256 << 20};
+    public static final double NANOS = 1e-9;
+
+    private enum Type {COUNTER, GAUGE, HISTOGRAM}
+
+    private record Family(String help, Type type, Map<String, Object> series) {
+    }
+
+    private final Map<String, Family> families = new TreeMap<>();
+
+    /** A monotonically increasing count, striped across threads. */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Histogram over its exported bucket bounds. A value is counted in the first bucket
+     * whose bound it does not exceed, found by binary search, so every {@code le} is
+     * exact and inclusive as Prometheus requires and recording is one counter increment.
+     */
+    public static final class Histogram {
+        private final AtomicLongArray counts;
+        private final LongAdder sum = new LongAdder();
+        private final double scale;
+        private final double[] bounds;
+        // The bounds in the recorded unit; the last bucket, past them all, is +Inf
+        private final long[] limits;
+
+        private Histogram(double scale, double[] bounds) {
+            this.scale = scale;
+            this.bounds = bounds.clone();
+            this.limits = new long[bounds.length];
+            for (int i = 0; i < bounds.length; i++) {
+                if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                    throw new IllegalArgumentException("Histogram bounds must increase: " + Arrays.toString(bounds));
+                }
+                limits[i] = limit(bounds[i] / scale);
+            }
+            this.counts = new AtomicLongArray(bounds.length + 1);
+        }
+
+        // Largest recorded value within the bound; 0.001 s / 1e-9 is 999999.9999999999 in doubles, but means 1 ms
+        private static long limit(double bound) {
+            long nearest = Math.round(bound);
+            return Math.abs(bound - nearest) <= 1e-9 * Math.max(1, Math.abs(bound)) ? nearest : (long) Math.floor(bound);
+        }
+
+        /** Records one value in the histogram's base unit, e.g. nanoseconds. Negative values count as 0. */
+        public void record(long value) {
+            long v = Math.max(0, value);
+            counts.incrementAndGet(index(v));
+            sum.add(v);
+        }
+
+        /** Starts timing a block for a histogram recorded in nanoseconds; close it to record. */
+        public Timer time() {
+            return new Timer(this, System.nanoTime());
+        }
+
+        private int index(long v) {
+            int low = 0;
+            int high = limits.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (limits[mid] < v) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        public long count() {
+            long n = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                n += counts.get(i);
+            }
+            return n;
+        }
+
+        /**
+         * Upper bound, in the base unit, of the bucket holding quantile {@code q} (0..1), or 0 when
+         * empty; values past the last bound report that bound, as histogram_quantile does.
+         */
+        public long quantile(double q) {
+            long[] snapshot = snapshot();
+            long total = 0;
+            for (long c : snapshot) total += c;
+            if (total == 0 || limits.length == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, q)) * total));
+            long seen = 0;
+            for (int i = 0; i < limits.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return limits[i];
+            }
+            return limits[limits.length - 1];
+        }
+
+        private long[] snapshot() {
+            long[] snapshot = new long[counts.length()];
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = counts.get(i);
+            }
+            return snapshot;
+        }
+    }
+
+    /** Records the time since it was started when closed; use in try-with-resources. */
+    public record Timer(Histogram histogram, long startNanos) implements AutoCloseable {
+        @Override
+        public void close() {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return register(name, help, Type.COUNTER, labels, Counter::new);
+    }
+
+    /** A counter whose value is read from {@code value} at scrape time, e.g. an existing stats field. */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, Type.COUNTER, labels, () -> value);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, help, Type.GAUGE, labels, () -> value);
+    }
+
+    /**
+     * @param scale  multiplier from the recorded unit to the exported one, e.g.
+     *               {@link #NANOS} to record nanoseconds and export seconds
+     * @param bounds exported bucket upper bounds, in the exported unit
+     */
+    public Histogram histogram(String name, String help, double scale, double[] bounds, String... labels) {
+        return register(name, help, Type.HISTOGRAM, labels, () -> new Histogram(scale, bounds));
+    }
+
+    /** A latency histogram recorded in nanoseconds and exported in seconds. */
+    public Histogram timer(String name, String help, String... labels) {
+        return histogram(name, help, NANOS, LATENCY_BUCKETS, labels);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T register(String name, String help, Type type, String[] labels,
+                                        Supplier<T> factory) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs: " + name);
+        }
+        Family family = families.computeIfAbsent(name, n -> new Family(help, type, new LinkedHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type());
+        }
+        return (T) family.series().computeIfAbsent(labelString(labels), l -> factory.get());
+    }
+
+    private static String labelString(String[] labels) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            sb.append(i == 0 ? "" : ",").append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /** Renders every series in the Prometheus text exposition format (version 0.0.4). */
+    public String scrape() {
+        List<Map.Entry<String, Family>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>();
+            families.forEach((name, family) ->
+                    snapshot.add(Map.entry(name, new Family(family.help(), family.type(),
+                            new LinkedHashMap<>(family.series())))));
+        }
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : snapshot) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type().name().toLowerCase()).append('\n');
+            family.series().forEach((labels, series) -> {
+                try {
+                    appendSeries(out, name, labels, series);
+                } catch (RuntimeException e) {
+                    // One broken supplier must not take the whole scrape down
+                    System.err.println("Metric " + name + " failed: " + e.getMessage());
+                }
+            });
+        }
+        return out.toString();
+    }
+
+    private static void appendSeries(StringBuilder out, String name, String labels, Object series) {
+        if (series instanceof Counter counter) {
+            sample(out, name, labels, counter.get());
+        } else if (series instanceof LongSupplier value) {
+            sample(out, name, labels, value.getAsLong());
+        } else if (series instanceof DoubleSupplier value) {
+            sample(out, name, labels, value.getAsDouble());
+        } else if (series instanceof Histogram histogram) {
+            long[] counts = histogram.snapshot();
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < histogram.bounds.length; i++) {
+                cumulative += counts[i];
+                sample(out, name + "_bucket", prefix + "le=\"" + histogram.bounds[i] + "\"", cumulative);
+            }
+            cumulative += counts[histogram.bounds.length];
+            sample(out, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+            sample(out, name + "_sum", labels, histogram.sum.sum() * histogram.scale);
+            sample(out, name + "_count", labels, cumulative);
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
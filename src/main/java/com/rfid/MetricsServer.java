@@ -0,0 +1,96 @@
+package com.rfid;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link Metrics#scrape()} at {@code /metrics} for Prometheus, on the JDK's
+ * built-in HTTP server with a single daemon thread. It listens on loopback only
+ * unless metrics.allowRemote is true, since the endpoint has no authentication.
+ */
+public class MetricsServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 9464;
+    public static final String DEFAULT_HOST = "127.0.0.1";
+
+    private final HttpServer server;
+
+    public MetricsServer(Metrics metrics, String host, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                send(exchange, body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Metrics-Http");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+    }
+
+    /** Starts the endpoint unless metrics.enabled is false; returns null if it is off or cannot bind. */
+    public static MetricsServer fromConfig(AppConfig config, Metrics metrics) {
+        if (!config.getBoolean("metrics.enabled", true)) {
+            return null;
+        }
+        String host = config.getString("metrics.host", DEFAULT_HOST);
+        if (!isLoopback(host) && !config.getBoolean("metrics.allowRemote", false)) {
+            System.err.println("metrics.host=" + host + " is reachable from other machines; set "
+                    + "metrics.allowRemote=true to allow it. Listening on " + DEFAULT_HOST + " instead");
+            host = DEFAULT_HOST;
+        }
+        int port = config.getInt("metrics.port", DEFAULT_PORT);
+        try {
+            return new MetricsServer(metrics, host, port);
+        } catch (IOException e) {
+            System.err.println("Metrics endpoint disabled, cannot listen on " + host + ":" + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isLoopback(String host) {
+        try {
+            return InetAddress.getByName(host).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static void send(HttpExchange exchange, byte[] body) throws IOException {
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(200, head ? -1 : body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public String getHost() {
+        return server.getAddress().getHostString();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
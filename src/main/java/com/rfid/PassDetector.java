@@ -0,0 +1,161 @@
+package com.rfid;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses the raw reads of a tag at one reader into passes. Consecutive reads
+ * of an EPC belong to the same pass until the reader's own timestamps show a gap
+ * longer than {@code gapMillis}, or no read has arrived for that long. A closed
+ * pass is emitted once, stamped with the reader time of its peak-RSSI read (the
+ * moment the tag was closest to the antenna) as both first and last seen, and
+ * with the antenna that saw that peak.
+ */
+public class PassDetector {
+    public static final long DEFAULT_GAP_MILLIS = 2_000;
+
+    public interface PassListener {
+        void onPass(TagDetail pass);
+    }
+
+    public record Stats(long reads, long passes, int openPasses) {
+    }
+
+    private static final class Pass {
+        int antenna;
+        long firstMicros;
+        long lastMicros;
+        long peakMicros;
+        double peakRssi;
+        long lastArrivalNanos;
+    }
+
+    private final long gapMicros;
+    private final long gapNanos;
+    private final PassListener listener;
+    private final Util util;
+    // One lane per reader, so readers never contend with each other
+    private final Map<String, Map<String, Pass>> lanes = new ConcurrentHashMap<>();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final ScheduledExecutorService sweeper;
+
+    public PassDetector(long gapMillis, Util util, PassListener listener) {
+        this.gapMicros = TimeUnit.MILLISECONDS.toMicros(Math.max(1, gapMillis));
+        this.gapNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, gapMillis));
+        this.listener = listener;
+        this.util = util;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PassDetector-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(10, gapMillis / 4);
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static PassDetector fromConfig(AppConfig config, Util util, PassListener listener) {
+        return new PassDetector(config.getLong("pass.gapMillis", DEFAULT_GAP_MILLIS), util, listener);
+    }
+
+    public void offer(String reader, String epc, int antenna, long readerTimeMicros, double rssi) {
+        Map<String, Pass> lane = lanes.computeIfAbsent(reader, r -> new HashMap<>());
+        TagDetail closed = null;
+        synchronized (lane) {
+            Pass pass = lane.get(epc);
+            if (pass != null && readerTimeMicros - pass.lastMicros > gapMicros) {
+                lane.remove(epc);
+                closed = toTagDetail(reader, epc, pass);
+                pass = null;
+            }
+            if (pass == null) {
+                pass = new Pass();
+                pass.antenna = antenna;
+                pass.firstMicros = readerTimeMicros;
+                pass.lastMicros = readerTimeMicros;
+                pass.peakMicros = readerTimeMicros;
+                pass.peakRssi = rssi;
+                lane.put(epc, pass);
+            } else {
+                pass.firstMicros = Math.min(pass.firstMicros, readerTimeMicros);
+                pass.lastMicros = Math.max(pass.lastMicros, readerTimeMicros);
+                if (rssi > pass.peakRssi) {
+                    pass.peakRssi = rssi;
+                    pass.peakMicros = readerTimeMicros;
+                    pass.antenna = antenna;
+                }
+            }
+            pass.lastArrivalNanos = System.nanoTime();
+        }
+        reads.increment();
+        if (closed != null) {
+            emit(closed);
+        }
+    }
+
+    /** Closes every pass idle for longer than the gap, measured on the host clock. */
+    private void sweep() {
+        try {
+            close(System.nanoTime() - gapNanos);
+        } catch (RuntimeException e) {
+            util.addLog("❌ Pass sweep failed: " + e.getMessage());
+        }
+    }
+
+    /** Emits every open pass now, e.g. when reading stops or after a journal replay. */
+    public void flush() {
+        close(Long.MAX_VALUE);
+    }
+
+    public void stop() {
+        sweeper.shutdownNow();
+        flush();
+    }
+
+    private void close(long arrivedBeforeNanos) {
+        List<TagDetail> closed = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Pass>> lane : lanes.entrySet()) {
+            synchronized (lane.getValue()) {
+                Iterator<Map.Entry<String, Pass>> it = lane.getValue().entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Pass> entry = it.next();
+                    if (arrivedBeforeNanos == Long.MAX_VALUE
+                            || entry.getValue().lastArrivalNanos - arrivedBeforeNanos < 0) {
+                        closed.add(toTagDetail(lane.getKey(), entry.getKey(), entry.getValue()));
+                        it.remove();
+                    }
+                }
+            }
+        }
+        closed.forEach(this::emit);
+    }
+
+    private void emit(TagDetail pass) {
+        passes.increment();
+        listener.onPass(pass);
+    }
+
+    public Stats getStats() {
+        int open = 0;
+        for (Map<String, Pass> lane : lanes.values()) {
+            synchronized (lane) {
+                open += lane.size();
+            }
+        }
+        return new Stats(reads.sum(), passes.sum(), open);
+    }
+
+    private static TagDetail toTagDetail(String reader, String epc, Pass pass) {
+        Instant crossing = TagDetail.instantOfMicros(pass.peakMicros);
+        return new TagDetail(epc, pass.antenna, crossing, crossing, reader);
+    }
+}
@@ -6,8 +6,11 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class RFIDMarathonApp extends JFrame {
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
     private final Util util;
     private final MarathonPanel marathonPanel;
     private final RfidPanel rfidPanel;
@@ -15,29 +18,87 @@ public class RFIDMarathonApp extends JFrame {
     private final RfidTagProcessor rfidTagProcessor;
 
     public RFIDMarathonApp() {
+        AppConfig config = AppConfig.load();
+        Metrics metrics = new Metrics();
 
-        TagStorage storage = new TagStorageService(
-                "jdbc:postgresql://localhost:5432/speedway",
-                "perfectkode",
-                "perfectkode"
-        );
+        TagStorage storage = createStorage(config);
+        if (storage instanceof TagStorageService postgresStorage) {
+            postgresStorage.setMetrics(metrics);
+        }
 
         this.rfidPanel = new RfidPanel();
         this.marathonPanel = new MarathonPanel();
-        this.util = new Util(rfidPanel);
+        this.util = new Util(rfidPanel, config);
 
-        this.rfidTagProcessor = new RfidTagProcessor(storage, util);
+        this.rfidTagProcessor = RfidTagProcessor.fromConfig(config, storage, util);
+        rfidTagProcessor.setMetrics(metrics);
+        long shutdownTimeoutMillis = config.getLong("shutdown.timeoutMillis", DEFAULT_SHUTDOWN_TIMEOUT_MILLIS);
+        // Window close exits the JVM, so this covers it as well as a kill
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(shutdownTimeoutMillis), "App-Shutdown"));
 
-        this.connectionManager = new ReaderConnectionManager(rfidTagProcessor, util);
+        UiRefreshScheduler refreshScheduler = new UiRefreshScheduler(
+                config.getInt("ui.refreshHz", UiRefreshScheduler.DEFAULT_REFRESH_HZ));
+        this.connectionManager = new ReaderConnectionManager(rfidTagProcessor, util, refreshScheduler);
+        connectionManager.setMetrics(metrics);
+        connectionManager.setLifecycle(ReaderLifecycle.fromConfig(config));
+        connectionManager.setProfiles(ReaderProfile.fromConfig(config));
 
         SyncDataService syncService = new SyncDataService(marathonPanel, storage, util);
+        SyncTransport transport = SyncTransport.fromConfig(config);
+        transport.setMetrics(metrics);
+        syncService.setTransport(transport);
+        syncService.setBackgroundSync(BackgroundSync.fromConfig(config, storage, transport));
+        syncService.setGzipSync(config.getBoolean("sync.gzip", false));
+        syncService.setChunkedSync(ChunkedSync.fromConfig(config, storage));
+        syncService.setTagStateCache(rfidTagProcessor.getCache());
+        syncService.setMetrics(metrics);
+        MetricsServer metricsServer = MetricsServer.fromConfig(config, metrics);
+        if (metricsServer != null) {
+            util.addLog("📈 Metrics at http://" + metricsServer.getHost()
+                    + ":" + metricsServer.getPort() + "/metrics");
+        }
         rfidPanel.setSyncHandler(syncService);
         rfidPanel.setConnectionManager(connectionManager);
+        rfidPanel.setRefreshScheduler(refreshScheduler);
+        rfidPanel.setTagProcessor(rfidTagProcessor);
         marathonPanel.setSyncHandler(syncService);
 
         initializeUI();
     }
 
+    // Flushes open passes, queued reads and the cache's pending last_seen updates before the JVM exits
+    private void shutdown(long timeoutMillis) {
+        rfidTagProcessor.stop();
+        try {
+            if (!rfidTagProcessor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                System.err.println("Tag processor did not finish writing within " + timeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Normally the last lane already closed it; after a timeout the checkpoint stays "running"
+        ReadJournal journal = rfidTagProcessor.getJournal();
+        if (journal != null) {
+            journal.close();
+        }
+        // Only now, with the lanes done writing, can the embedded store checkpoint and close
+        if (rfidTagProcessor.getStorage() instanceof EmbeddedTagStorage embedded) {
+            embedded.close();
+        }
+    }
+
+    private static TagStorage createStorage(AppConfig config) {
+        if ("embedded".equalsIgnoreCase(config.getString("storage.type", "postgres"))) {
+            return EmbeddedTagStorage.fromConfig(config);
+        }
+        return new TagStorageService(JdbcConnectionPool.fromConfig(config,
+                config.getString("jdbc.url", "jdbc:postgresql://localhost:5432/speedway?reWriteBatchedInserts=true"),
+                config.getString("jdbc.user", "perfectkode"),
+                config.getString("jdbc.password", "perfectkode")
+        ), config.getInt("jdbc.fetchSize", TagStorageService.DEFAULT_FETCH_SIZE),
+                config.getString("event.name", TagStorageService.DEFAULT_EVENT_NAME));
+    }
+
     private void initializeUI() {
         setTitle("RFID Marathon Management System");
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -0,0 +1,287 @@
+package com.rfid;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of every raw read, written before the read is handed to
+ * the processor queue. Records are fixed-size and live in memory-mapped segment
+ * files named after the offset of their first record, so an offset is simply a
+ * global record number. A record only counts once its marker (written last) is
+ * set, which lets a restart find the end of the journal by scanning for the
+ * first empty slot. Old segments are deleted once more than
+ * {@code retainSegments} exist. A small checkpoint file records from which offset
+ * reads may not have reached storage yet, so a restart knows what to replay.
+ */
+public class ReadJournal implements AutoCloseable {
+    public static final String DEFAULT_DIR = "journal";
+    public static final int DEFAULT_SEGMENT_RECORDS = 524_288;
+    public static final int DEFAULT_RETAIN_SEGMENTS = 16;
+
+    static final int RECORD_SIZE = 128;
+    private static final int MARKER = 0x52454144;
+    private static final int MAX_EPC = 56;
+    private static final int MAX_READER = 44;
+    private static final String SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    // Record layout
+    private static final int MARKER_AT = 0;
+    private static final int ANTENNA_AT = 4;
+    private static final int RSSI_AT = 6;
+    private static final int READER_TIME_AT = 8;
+    private static final int WALL_TIME_AT = 16;
+    private static final int EPC_LEN_AT = 24;
+    private static final int READER_LEN_AT = 25;
+    private static final int EPC_AT = 28;
+    private static final int READER_AT = EPC_AT + MAX_EPC;
+
+    public record Read(String epc, int antenna, String reader, long readerTimeMicros, double rssi,
+                       long wallTimeMillis) {
+        public TagDetail toTagDetail() {
+            Instant seen = TagDetail.instantOfMicros(readerTimeMicros);
+            return new TagDetail(epc, antenna, seen, seen, reader);
+        }
+    }
+
+    /**
+     * Reads from {@code offset} on may not be in storage. {@code clean} is true when
+     * it was written by an orderly shutdown, false while the app is running, so a
+     * running checkpoint found at startup means the last session crashed.
+     */
+    public record Checkpoint(long offset, boolean clean) {
+    }
+
+    public interface ReadVisitor {
+        /** Return false to stop the replay. */
+        boolean visit(long offset, Read read);
+    }
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final int retainSegments;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentBase;
+    private int position;
+
+    public ReadJournal(Path dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_RECORDS, DEFAULT_RETAIN_SEGMENTS);
+    }
+
+    public ReadJournal(Path dir, int segmentRecords, int retainSegments) throws IOException {
+        this.dir = dir;
+        this.segmentRecords = Math.max(1, segmentRecords);
+        this.retainSegments = Math.max(1, retainSegments);
+        Files.createDirectories(dir);
+
+        List<Long> bases = segmentBases();
+        if (bases.isEmpty()) {
+            openSegment(0);
+        } else {
+            openSegment(bases.get(bases.size() - 1));
+            while (position < this.segmentRecords && segment.getInt(position * RECORD_SIZE + MARKER_AT) == MARKER) {
+                position++;
+            }
+        }
+    }
+
+    public static ReadJournal fromConfig(AppConfig config) throws IOException {
+        return new ReadJournal(Paths.get(config.getString("journal.dir", DEFAULT_DIR)),
+                config.getInt("journal.segmentRecords", DEFAULT_SEGMENT_RECORDS),
+                config.getInt("journal.retainSegments", DEFAULT_RETAIN_SEGMENTS));
+    }
+
+    /**
+     * Appends one read and returns its offset. Only touches the mapped segment
+     * (no allocation, no syscall) except when a segment fills up and the next
+     * one is mapped.
+     */
+    public synchronized long append(String epc, int antenna, String reader, long readerTimeMicros, double rssi) {
+        if (segment == null) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (position == segmentRecords) {
+            roll();
+        }
+        int at = position * RECORD_SIZE;
+        segment.putShort(at + ANTENNA_AT, (short) antenna);
+        segment.putShort(at + RSSI_AT, (short) Math.round(rssi * 100));
+        segment.putLong(at + READER_TIME_AT, readerTimeMicros);
+        segment.putLong(at + WALL_TIME_AT, System.currentTimeMillis());
+        segment.put(at + EPC_LEN_AT, (byte) putAscii(at + EPC_AT, epc, MAX_EPC));
+        segment.put(at + READER_LEN_AT, (byte) putAscii(at + READER_AT, reader, MAX_READER));
+        segment.putInt(at + MARKER_AT, MARKER);
+        return segmentBase + position++;
+    }
+
+    private int putAscii(int at, String value, int max) {
+        int len = value == null ? 0 : Math.min(value.length(), max);
+        for (int i = 0; i < len; i++) {
+            segment.put(at + i, (byte) value.charAt(i));
+        }
+        return len;
+    }
+
+    /** Offset the next append will get. */
+    public synchronized long getNextOffset() {
+        return segmentBase + position;
+    }
+
+    /** Oldest offset still retained. */
+    public synchronized long getFirstOffset() {
+        try {
+            List<Long> bases = segmentBases();
+            return bases.isEmpty() ? segmentBase : bases.get(0);
+        } catch (IOException e) {
+            return segmentBase;
+        }
+    }
+
+    /**
+     * Visits every committed read from {@code fromOffset} (clamped to the oldest
+     * retained one) and returns the offset after the last visited read, which is
+     * where the next replay should continue.
+     */
+    public long replay(long fromOffset, ReadVisitor visitor) throws IOException {
+        long offset = Math.max(fromOffset, getFirstOffset());
+        byte[] text = new byte[Math.max(MAX_EPC, MAX_READER)];
+
+        for (long base : segmentBases()) {
+            if (base + segmentRecords <= offset) continue;
+            MappedByteBuffer buf;
+            try (FileChannel ch = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (NoSuchFileException e) {
+                // Dropped by retention while we were replaying
+                continue;
+            }
+            int records = Math.min(segmentRecords, buf.capacity() / RECORD_SIZE);
+            for (int i = (int) Math.max(0, offset - base); i < records; i++) {
+                int at = i * RECORD_SIZE;
+                if (buf.getInt(at + MARKER_AT) != MARKER) {
+                    return offset;
+                }
+                Read read = new Read(
+                        getAscii(buf, at + EPC_AT, buf.get(at + EPC_LEN_AT), text),
+                        buf.getShort(at + ANTENNA_AT),
+                        getAscii(buf, at + READER_AT, buf.get(at + READER_LEN_AT), text),
+                        buf.getLong(at + READER_TIME_AT),
+                        buf.getShort(at + RSSI_AT) / 100.0,
+                        buf.getLong(at + WALL_TIME_AT));
+                offset = base + i + 1;
+                if (!visitor.visit(base + i, read)) {
+                    return offset;
+                }
+            }
+        }
+        return offset;
+    }
+
+    private static String getAscii(MappedByteBuffer buf, int at, int len, byte[] scratch) {
+        buf.get(at, scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.US_ASCII);
+    }
+
+    /** The last checkpoint written, or null if there is none (or it is unreadable). */
+    public Checkpoint readCheckpoint() {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            String[] parts = Files.readString(file, StandardCharsets.US_ASCII).trim().split(" ");
+            return new Checkpoint(Long.parseLong(parts[0]), parts.length > 1 && "clean".equals(parts[1]));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable journal checkpoint " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void writeCheckpoint(long offset, boolean clean) throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(tmp, offset + (clean ? " clean" : " running") + "\n", StandardCharsets.US_ASCII);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Flushes the mapped segment to disk; the OS does this anyway, this just bounds the loss on power failure. */
+    public synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (segment == null) return;
+        segment.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close journal segment: " + e.getMessage());
+        }
+        segment = null;
+    }
+
+    private void roll() {
+        // No force() here: the full segment is already in the page cache and fsyncing
+        // it would stall the reader listener thread for milliseconds
+        try {
+            channel.close();
+            openSegment(segmentBase + segmentRecords);
+            applyRetention();
+        } catch (IOException e) {
+            segment = null;
+            throw new RuntimeException("Failed to roll read journal: " + e.getMessage(), e);
+        }
+    }
+
+    private void openSegment(long base) throws IOException {
+        channel = FileChannel.open(segmentPath(base), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+        segmentBase = base;
+        position = 0;
+    }
+
+    private void applyRetention() throws IOException {
+        List<Long> bases = segmentBases();
+        for (int i = 0; i < bases.size() - retainSegments; i++) {
+            Files.deleteIfExists(segmentPath(bases.get(i)));
+        }
+    }
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("%020d%s", base, SUFFIX));
+    }
+
+    private List<Long> segmentBases() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    });
+        }
+        bases.sort(null);
+        return bases;
+    }
+}
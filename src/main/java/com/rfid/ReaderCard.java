@@ -6,6 +6,7 @@ import java.util.function.Consumer;
 public class ReaderCard {
     private JPanel panel;
     private JTextField ipField;
+    private JComboBox<ReaderProfile> profileBox;
     private JButton connectButton, startButton, deleteButton;
     private JLabel tagCountLabel;
     private boolean connected = false;
@@ -18,13 +19,15 @@ public class ReaderCard {
 
     public ReaderCard(String name,
                       ReaderConnectionManager manager,
-                      Runnable updateTotalTagCount,
                       Consumer<String> logCallback) {
 
         this.readerName = name; // ✅ store reader name
 
         panel = new JPanel(new FlowLayout(FlowLayout.LEFT,10,5));
         ipField = new JTextField(12);
+        ipField.setToolTipText("Reader IP, or sim://name?runners=500&waves=3&speed=10 for a simulated reader");
+        profileBox = new JComboBox<>(manager.getProfiles().values().toArray(new ReaderProfile[0]));
+        profileBox.setToolTipText("Reader profile; changing it retunes a connected reader in place");
         connectButton = new JButton("Connect");
         startButton = new JButton("Start");
         deleteButton = new JButton("Delete");
@@ -34,6 +37,7 @@ public class ReaderCard {
 
         panel.add(new JLabel(name));
         panel.add(ipField);
+        panel.add(profileBox);
         panel.add(connectButton);
         panel.add(startButton);
         panel.add(deleteButton);
@@ -49,11 +53,10 @@ public class ReaderCard {
 
             if (!connected) {
                 connectButton.setEnabled(false);
-                manager.connectReader(ip,
+                manager.connectReader(ip, selectedProfile(),
                         count -> {
                             tagCount = count;
                             tagCountLabel.setText("Tags: " + tagCount);
-                            updateTotalTagCount.run();
                         },
                         () -> {
                             connected = true;
@@ -79,6 +82,14 @@ public class ReaderCard {
             }
         });
 
+        // Profile changes apply immediately to a connected reader
+        profileBox.addActionListener(e -> {
+            if (connected) {
+                manager.applyProfile(ipAddress, selectedProfile());
+                logCallback.accept(readerName + " switching to profile " + selectedProfile().getName());
+            }
+        });
+
         // Start / Stop reading
         startButton.addActionListener(e -> {
             if (!reading) {
@@ -106,6 +117,10 @@ public class ReaderCard {
         logCallback.accept("Stopped reading on " + ip);
     }
 
+    private ReaderProfile selectedProfile() {
+        return (ReaderProfile) profileBox.getSelectedItem();
+    }
+
     public JPanel getPanel() { return panel; }
     public int getTagCount() { return tagCount; }
     public void setDeleteCallback(Runnable deleteCallback) { this.deleteCallback = deleteCallback; }
@@ -1,5 +1,7 @@
 package com.rfid;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -8,14 +10,45 @@ import java.util.function.Consumer;
 public class ReaderConnectionManager {
     private final RfidTagProcessor tagProcessor;
     private final Util util;
+    private final UiRefreshScheduler refreshScheduler;
     private final Map<String, RfidReaderConnection> connections = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> countBindings = new ConcurrentHashMap<>();
+    private ReaderLifecycle lifecycle = new ReaderLifecycle();
+    private Map<String, ReaderProfile> profiles = Map.of(ReaderProfile.DEFAULT_NAME, ReaderProfile.defaults());
+    private Metrics metrics;
 
-    public ReaderConnectionManager(RfidTagProcessor tagProcessor, Util util) {
+    public ReaderConnectionManager(RfidTagProcessor tagProcessor, Util util, UiRefreshScheduler refreshScheduler) {
         this.tagProcessor = tagProcessor;
         this.util = util;
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setLifecycle(ReaderLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    public void setProfiles(Map<String, ReaderProfile> profiles) {
+        this.profiles = profiles;
+    }
+
+    /** The reader profiles by name, the default first. */
+    public Map<String, ReaderProfile> getProfiles() {
+        return profiles;
+    }
+
+    public void connectReader(String ip,
+                              Consumer<Integer> tagCountCallback,
+                              Runnable onConnected,
+                              Runnable onFailed) {
+        connectReader(ip, ReaderProfile.defaults(), tagCountCallback, onConnected, onFailed);
     }
 
     public void connectReader(String ip,
+                              ReaderProfile profile,
                               Consumer<Integer> tagCountCallback,
                               Runnable onConnected,
                               Runnable onFailed) {
@@ -25,8 +58,13 @@ public class ReaderConnectionManager {
             return;
         }
 
-        RfidReaderConnection connection = new RfidReaderConnection(tagProcessor, util, tagCountCallback);
+        RfidReaderConnection connection = new RfidReaderConnection(tagProcessor, util, lifecycle, tagCountCallback);
+        if (metrics != null) {
+            connection.setMetrics(metrics);
+        }
+        connection.applyProfile(profile);
         connections.put(ip, connection);
+        countBindings.put(ip, refreshScheduler.register(connection::getTagCount, tagCountCallback::accept));
 
         connection.connect(ip,
                 () -> {
@@ -36,6 +74,7 @@ public class ReaderConnectionManager {
                 () -> {
                     util.addLog("❌ Failed to connect: " + ip);
                     connections.remove(ip);
+                    unbindCount(ip);
                     onFailed.run();
                 }
         );
@@ -43,28 +82,100 @@ public class ReaderConnectionManager {
 
     public void disconnectReader(String ip) {
         RfidReaderConnection connection = connections.remove(ip);
+        unbindCount(ip);
         if (connection != null) {
-            connection.disconnect();
-            util.addLog("🔌 Disconnected: " + ip);
+            lifecycle.submit(() -> {
+                connection.disconnect();
+                util.addLog("🔌 Disconnected: " + ip);
+            });
         }
     }
 
+    private void unbindCount(String ip) {
+        Runnable unbind = countBindings.remove(ip);
+        if (unbind != null) unbind.run();
+    }
+
+    public void applyProfile(String ip, ReaderProfile profile) {
+        RfidReaderConnection connection = connections.get(ip);
+        if (connection != null) connection.applyProfile(profile);
+    }
+
     public void startReader(String ip) {
         RfidReaderConnection connection = connections.get(ip);
-        if (connection != null) connection.startReader();
+        if (connection != null) start(Map.of(ip, connection));
     }
 
     public void stopReader(String ip) {
         RfidReaderConnection connection = connections.get(ip);
-        if (connection != null) connection.stopReader();
+        if (connection != null) stop(Map.of(ip, connection));
     }
 
     public void startAll() {
-        connections.values().forEach(RfidReaderConnection::startReader);
+        start(Map.copyOf(connections));
     }
 
     public void stopAll() {
-        connections.values().forEach(RfidReaderConnection::stopReader);
+        stop(Map.copyOf(connections));
+    }
+
+    // Starts run off the EDT and are released together, so every reader's inventory begins within milliseconds
+    private void start(Map<String, RfidReaderConnection> targets) {
+        Map<String, ReaderLifecycle.Operation> starts = new LinkedHashMap<>();
+        targets.forEach((ip, connection) -> {
+            if (connection.canStart()) starts.put(ip, connection::startReader);
+        });
+        if (starts.isEmpty()) return;
+
+        lifecycle.submit(() -> {
+            List<ReaderLifecycle.StartResult> results;
+            try {
+                results = lifecycle.startTogether(starts);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long firstAck = Long.MAX_VALUE;
+            long lastAck = Long.MIN_VALUE;
+            for (ReaderLifecycle.StartResult result : results) {
+                if (!result.isStarted()) {
+                    util.addLog("❌ Failed to start " + result.reader() + ": " + result.error());
+                    continue;
+                }
+                firstAck = Math.min(firstAck, result.ackMicros());
+                lastAck = Math.max(lastAck, result.ackMicros());
+                util.addLog(String.format("▶ %s started: +%.1f ms dispatch, +%.1f ms ack",
+                        result.reader(), result.dispatchMicros() / 1000.0, result.ackMicros() / 1000.0));
+                if (metrics != null) {
+                    metrics.timer("rfid_reader_start_offset_seconds",
+                            "Time from the start barrier until the reader accepted start",
+                            "reader", result.reader()).record(result.ackMicros() * 1_000);
+                }
+            }
+            if (firstAck <= lastAck) {
+                long skew = lastAck - firstAck;
+                util.addLog(String.format("⏱ Start skew across %d reader(s): %.1f ms", starts.size(), skew / 1000.0));
+                if (metrics != null) {
+                    metrics.timer("rfid_reader_start_skew_seconds",
+                            "Spread between the first and last reader accepting start").record(skew * 1_000);
+                }
+            }
+        });
+    }
+
+    private void stop(Map<String, RfidReaderConnection> targets) {
+        if (targets.isEmpty()) return;
+        Map<String, ReaderLifecycle.Operation> stops = new LinkedHashMap<>();
+        // Each stopReader bounds itself with the stop timeout; the outer bound only catches a stuck lock
+        targets.forEach((ip, connection) -> stops.put(ip, connection::stopReader));
+        lifecycle.submit(() -> {
+            try {
+                lifecycle.runAll("Stopping", stops, 2 * lifecycle.getStopTimeoutMillis())
+                        .forEach((ip, e) -> util.addLog("❌ Failed to stop " + ip + ": " + e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
     }
 
     public int getTotalTagCount() {
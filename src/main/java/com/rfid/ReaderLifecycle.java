@@ -0,0 +1,207 @@
+package com.rfid;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs reader connect, start, stop and disconnect calls on virtual threads, one
+ * per call, so any number of readers are handled in parallel and none of it runs
+ * on the EDT. Every call is bounded by a timeout; a call that overruns is
+ * interrupted and reported as failed instead of hanging its reader card.
+ */
+public class ReaderLifecycle {
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 20_000;
+    public static final long DEFAULT_START_TIMEOUT_MILLIS = 5_000;
+    public static final long DEFAULT_STOP_TIMEOUT_MILLIS = 5_000;
+    public static final long DEFAULT_KEEPALIVE_MILLIS = 1_000;
+    public static final long DEFAULT_RECONNECT_INITIAL_MILLIS = 250;
+    public static final long DEFAULT_RECONNECT_MAX_MILLIS = 5_000;
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Outcome of one reader in {@link #startTogether}. Offsets are from the moment
+     * all starts were released: {@code dispatchMicros} until its start call began,
+     * {@code ackMicros} until the reader had accepted it (-1 if it failed).
+     */
+    public record StartResult(String reader, long dispatchMicros, long ackMicros, String error) {
+        public boolean isStarted() {
+            return error == null;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ReaderLifecycle-", 0).factory());
+    private final long connectTimeoutMillis;
+    private final long startTimeoutMillis;
+    private final long stopTimeoutMillis;
+    private long keepaliveMillis = DEFAULT_KEEPALIVE_MILLIS;
+    private long reconnectInitialMillis = DEFAULT_RECONNECT_INITIAL_MILLIS;
+    private long reconnectMaxMillis = DEFAULT_RECONNECT_MAX_MILLIS;
+
+    public ReaderLifecycle() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_START_TIMEOUT_MILLIS, DEFAULT_STOP_TIMEOUT_MILLIS);
+    }
+
+    public ReaderLifecycle(long connectTimeoutMillis, long startTimeoutMillis, long stopTimeoutMillis) {
+        this.connectTimeoutMillis = Math.max(1, connectTimeoutMillis);
+        this.startTimeoutMillis = Math.max(1, startTimeoutMillis);
+        this.stopTimeoutMillis = Math.max(1, stopTimeoutMillis);
+    }
+
+    public static ReaderLifecycle fromConfig(AppConfig config) {
+        ReaderLifecycle lifecycle = new ReaderLifecycle(
+                config.getLong("reader.connectTimeoutMillis", DEFAULT_CONNECT_TIMEOUT_MILLIS),
+                config.getLong("reader.startTimeoutMillis", DEFAULT_START_TIMEOUT_MILLIS),
+                config.getLong("reader.stopTimeoutMillis", DEFAULT_STOP_TIMEOUT_MILLIS));
+        lifecycle.setKeepaliveMillis(config.getLong("reader.keepaliveMillis", DEFAULT_KEEPALIVE_MILLIS));
+        lifecycle.setReconnectBackoff(
+                config.getLong("reader.reconnectInitialMillis", DEFAULT_RECONNECT_INITIAL_MILLIS),
+                config.getLong("reader.reconnectMaxMillis", DEFAULT_RECONNECT_MAX_MILLIS));
+        return lifecycle;
+    }
+
+    /** How often readers send keepalives; a link is declared down after a few missed ones. */
+    public void setKeepaliveMillis(long keepaliveMillis) {
+        this.keepaliveMillis = Math.max(100, keepaliveMillis);
+    }
+
+    /** Reconnect attempts start {@code initialMillis} apart and back off, doubling, up to {@code maxMillis}. */
+    public void setReconnectBackoff(long initialMillis, long maxMillis) {
+        this.reconnectInitialMillis = Math.max(1, initialMillis);
+        this.reconnectMaxMillis = Math.max(reconnectInitialMillis, maxMillis);
+    }
+
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public long getStartTimeoutMillis() {
+        return startTimeoutMillis;
+    }
+
+    public long getStopTimeoutMillis() {
+        return stopTimeoutMillis;
+    }
+
+    public long getKeepaliveMillis() {
+        return keepaliveMillis;
+    }
+
+    public long getReconnectInitialMillis() {
+        return reconnectInitialMillis;
+    }
+
+    public long getReconnectMaxMillis() {
+        return reconnectMaxMillis;
+    }
+
+    /** Runs {@code task} on its own virtual thread. */
+    public CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(task, executor);
+    }
+
+    /**
+     * Runs {@code op} on its own virtual thread and waits at most
+     * {@code timeoutMillis} for it, interrupting it on timeout. Rethrows what the
+     * operation threw.
+     */
+    public void call(String what, Operation op, long timeoutMillis) throws Exception {
+        Future<?> future = executor.submit(() -> {
+            op.run();
+            return null;
+        });
+        await(what, future, timeoutMillis);
+    }
+
+    private static void await(String what, Future<?> future, long timeoutMillis) throws Exception {
+        try {
+            future.get(Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new TimeoutException(what + " timed out after " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Starts every reader at the same moment. Each start waits on its own virtual
+     * thread until all of them are ready, then they are released together, so
+     * inventory begins within the readers' own command latency of each other.
+     * Blocks until all have started or failed; readers not ready within the start
+     * timeout are started anyway.
+     */
+    public List<StartResult> startTogether(Map<String, Operation> starts) throws InterruptedException {
+        CountDownLatch armed = new CountDownLatch(starts.size());
+        CountDownLatch release = new CountDownLatch(1);
+        Map<String, Future<long[]>> futures = new LinkedHashMap<>();
+        starts.forEach((reader, start) -> futures.put(reader, executor.submit(() -> {
+            armed.countDown();
+            release.await();
+            long dispatched = System.nanoTime();
+            start.run();
+            return new long[]{dispatched, System.nanoTime()};
+        })));
+
+        armed.await(startTimeoutMillis, TimeUnit.MILLISECONDS);
+        long releasedAt = System.nanoTime();
+        release.countDown();
+
+        long deadline = releasedAt + TimeUnit.MILLISECONDS.toNanos(startTimeoutMillis);
+        List<StartResult> results = new ArrayList<>(futures.size());
+        for (Map.Entry<String, Future<long[]>> entry : futures.entrySet()) {
+            Future<long[]> future = entry.getValue();
+            try {
+                long[] times = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                results.add(new StartResult(entry.getKey(), (times[0] - releasedAt) / 1_000,
+                        (times[1] - releasedAt) / 1_000, null));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                results.add(new StartResult(entry.getKey(), -1, -1,
+                        "start timed out after " + startTimeoutMillis + " ms"));
+            } catch (ExecutionException e) {
+                results.add(new StartResult(entry.getKey(), -1, -1, String.valueOf(e.getCause().getMessage())));
+            }
+        }
+        return results;
+    }
+
+    /** Runs every operation in parallel, each bounded by {@code timeoutMillis}; returns the errors by reader. */
+    public Map<String, Exception> runAll(String what, Map<String, Operation> ops, long timeoutMillis)
+            throws InterruptedException {
+        Map<String, CompletableFuture<Exception>> futures = new LinkedHashMap<>();
+        ops.forEach((reader, op) -> futures.put(reader, CompletableFuture.supplyAsync(() -> {
+            try {
+                call(what + " " + reader, op, timeoutMillis);
+                return null;
+            } catch (Exception e) {
+                return e;
+            }
+        }, executor)));
+        Map<String, Exception> errors = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Exception>> entry : futures.entrySet()) {
+            try {
+                Exception error = entry.getValue().get();
+                if (error != null) {
+                    errors.put(entry.getKey(), error);
+                }
+            } catch (ExecutionException e) {
+                errors.put(entry.getKey(), e);
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,293 @@
+package com.rfid;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impinj.octane.ReaderMode;
+import com.impinj.octane.SearchMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Named reader tuning, assigned per reader in its card: reader and search mode,
+ * session, tag population, per-antenna power and sensitivity, report fields and
+ * up to two EPC prefixes the reader filters on, so other tags never cross the
+ * network. Modes, session and population left out keep the reader's defaults.
+ * Profiles are read from a JSON array in {@code reader-profiles.json}
+ * (reader.profilesFile); {@link #DEFAULT_NAME} is always available and matches
+ * the settings every reader used before profiles existed.
+ */
+public class ReaderProfile {
+    public static final String DEFAULT_NAME = "Default";
+    public static final String DEFAULT_FILE = "reader-profiles.json";
+    // The Octane SDK offers two tag filters
+    public static final int MAX_EPC_PREFIXES = 2;
+    // Antenna ports on the Speedway and R700 readers this app drives
+    public static final int MAX_ANTENNA_PORT = 4;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String name = DEFAULT_NAME;
+    private String readerMode;
+    private String searchMode;
+    private Integer session;
+    private Integer tagPopulationEstimate;
+    private List<Antenna> antennas = defaultAntennas();
+    private boolean includePeakRssi = true;
+    private boolean includeFirstSeenTime = true;
+    private boolean includeLastSeenTime = true;
+    private boolean includeSeenCount = false;
+    private boolean includePhaseAngle = false;
+    private List<String> epcPrefixes = new ArrayList<>();
+
+    public ReaderProfile() {
+    }
+
+    public static ReaderProfile defaults() {
+        return new ReaderProfile();
+    }
+
+    /** The profiles in the configured file, after the built-in default; just the default if there is no file. */
+    public static Map<String, ReaderProfile> fromConfig(AppConfig config) {
+        return load(Path.of(config.getString("reader.profilesFile", DEFAULT_FILE)),
+                config.getBoolean("pass.enabled", true));
+    }
+
+    /** @param passDetection whether reads feed the pass detector, which needs peak RSSI and seen times */
+    public static Map<String, ReaderProfile> load(Path file, boolean passDetection) {
+        Map<String, ReaderProfile> profiles = new LinkedHashMap<>();
+        profiles.put(DEFAULT_NAME, defaults());
+        if (!Files.isRegularFile(file)) {
+            return profiles;
+        }
+        try {
+            List<ReaderProfile> loaded = MAPPER.readValue(file.toFile(), new TypeReference<List<ReaderProfile>>() {
+            });
+            for (ReaderProfile profile : loaded) {
+                try {
+                    profile.validate(passDetection);
+                    profiles.put(profile.getName(), profile);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping reader profile " + profile.getName() + " in " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable reader profiles " + file + ": " + e.getMessage());
+        }
+        return profiles;
+    }
+
+    /**
+     * Checks everything the reader would otherwise reject only when the profile is
+     * applied, and that it reports what pass detection needs when that is on.
+     */
+    public void validate(boolean passDetection) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("a profile needs a name");
+        }
+        if (readerMode != null) ReaderMode.valueOf(readerMode);
+        if (searchMode != null) SearchMode.valueOf(searchMode);
+        if (session != null && (session < 0 || session > 3)) {
+            throw new IllegalArgumentException("session must be 0-3, was " + session);
+        }
+        if (tagPopulationEstimate != null && tagPopulationEstimate < 1) {
+            throw new IllegalArgumentException("tagPopulationEstimate must be positive");
+        }
+        if (antennas == null || antennas.isEmpty()) {
+            throw new IllegalArgumentException("at least one antenna must be enabled");
+        }
+        Set<Integer> ports = new HashSet<>();
+        for (Antenna antenna : antennas) {
+            if (antenna.getPort() < 1 || antenna.getPort() > MAX_ANTENNA_PORT) {
+                throw new IllegalArgumentException("antenna port must be 1-" + MAX_ANTENNA_PORT + ", was "
+                        + antenna.getPort());
+            }
+            if (!ports.add(antenna.getPort())) {
+                throw new IllegalArgumentException("antenna port " + antenna.getPort() + " is listed twice");
+            }
+        }
+        // Passes are stamped with the peak-RSSI read's reader time, and split on gaps between seen times
+        if (passDetection && !(includePeakRssi && includeFirstSeenTime && includeLastSeenTime)) {
+            throw new IllegalArgumentException("pass detection needs includePeakRssi, includeFirstSeenTime and "
+                    + "includeLastSeenTime; set pass.enabled=false to turn them off");
+        }
+        if (epcPrefixes.size() > MAX_EPC_PREFIXES) {
+            throw new IllegalArgumentException("at most " + MAX_EPC_PREFIXES + " EPC prefixes are supported");
+        }
+        for (String prefix : epcPrefixes) {
+            if (!prefix.matches("[0-9A-Fa-f]+")) {
+                throw new IllegalArgumentException("EPC prefix is not hex: " + prefix);
+            }
+        }
+    }
+
+    public boolean isEnabledPort(int port) {
+        for (Antenna antenna : antennas) {
+            if (antenna.getPort() == port) return true;
+        }
+        return false;
+    }
+
+    public boolean matchesEpc(String epc) {
+        if (epcPrefixes.isEmpty()) return true;
+        for (String prefix : epcPrefixes) {
+            if (epc.regionMatches(true, 0, prefix, 0, prefix.length())) return true;
+        }
+        return false;
+    }
+
+    private static List<Antenna> defaultAntennas() {
+        List<Antenna> antennas = new ArrayList<>();
+        for (int port = 1; port <= 4; port++) {
+            antennas.add(new Antenna(port, 30.0, -70));
+        }
+        return antennas;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getReaderMode() {
+        return readerMode;
+    }
+
+    public void setReaderMode(String readerMode) {
+        this.readerMode = readerMode;
+    }
+
+    public String getSearchMode() {
+        return searchMode;
+    }
+
+    public void setSearchMode(String searchMode) {
+        this.searchMode = searchMode;
+    }
+
+    public Integer getSession() {
+        return session;
+    }
+
+    public void setSession(Integer session) {
+        this.session = session;
+    }
+
+    public Integer getTagPopulationEstimate() {
+        return tagPopulationEstimate;
+    }
+
+    public void setTagPopulationEstimate(Integer tagPopulationEstimate) {
+        this.tagPopulationEstimate = tagPopulationEstimate;
+    }
+
+    public List<Antenna> getAntennas() {
+        return antennas;
+    }
+
+    public void setAntennas(List<Antenna> antennas) {
+        this.antennas = antennas;
+    }
+
+    public boolean isIncludePeakRssi() {
+        return includePeakRssi;
+    }
+
+    public void setIncludePeakRssi(boolean includePeakRssi) {
+        this.includePeakRssi = includePeakRssi;
+    }
+
+    public boolean isIncludeFirstSeenTime() {
+        return includeFirstSeenTime;
+    }
+
+    public void setIncludeFirstSeenTime(boolean includeFirstSeenTime) {
+        this.includeFirstSeenTime = includeFirstSeenTime;
+    }
+
+    public boolean isIncludeLastSeenTime() {
+        return includeLastSeenTime;
+    }
+
+    public void setIncludeLastSeenTime(boolean includeLastSeenTime) {
+        this.includeLastSeenTime = includeLastSeenTime;
+    }
+
+    public boolean isIncludeSeenCount() {
+        return includeSeenCount;
+    }
+
+    public void setIncludeSeenCount(boolean includeSeenCount) {
+        this.includeSeenCount = includeSeenCount;
+    }
+
+    public boolean isIncludePhaseAngle() {
+        return includePhaseAngle;
+    }
+
+    public void setIncludePhaseAngle(boolean includePhaseAngle) {
+        this.includePhaseAngle = includePhaseAngle;
+    }
+
+    public List<String> getEpcPrefixes() {
+        return epcPrefixes;
+    }
+
+    public void setEpcPrefixes(List<String> epcPrefixes) {
+        this.epcPrefixes = epcPrefixes == null ? new ArrayList<>() : epcPrefixes;
+    }
+
+    /** One enabled antenna port; ports left out of a profile are disabled. */
+    public static class Antenna {
+        private int port;
+        private double txPowerDbm = 30.0;
+        private double rxSensitivityDbm = -70;
+
+        public Antenna() {
+        }
+
+        public Antenna(int port, double txPowerDbm, double rxSensitivityDbm) {
+            this.port = port;
+            this.txPowerDbm = txPowerDbm;
+            this.rxSensitivityDbm = rxSensitivityDbm;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public double getTxPowerDbm() {
+            return txPowerDbm;
+        }
+
+        public void setTxPowerDbm(double txPowerDbm) {
+            this.txPowerDbm = txPowerDbm;
+        }
+
+        public double getRxSensitivityDbm() {
+            return rxSensitivityDbm;
+        }
+
+        public void setRxSensitivityDbm(double rxSensitivityDbm) {
+            this.rxSensitivityDbm = rxSensitivityDbm;
+        }
+    }
+}
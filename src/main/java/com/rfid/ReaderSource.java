@@ -0,0 +1,61 @@
+package com.rfid;
+
+/**
+ * Where reads come from. {@link ImpinjReaderSource} talks to a real reader;
+ * {@link SimulatedReaderSource} generates race traffic for addresses starting
+ * with {@code sim://}, so the ingest path can be load-tested without hardware.
+ */
+public interface ReaderSource {
+    String SIMULATED_SCHEME = "sim://";
+
+    interface ReadListener {
+        /** Called on the source's own thread for every read, with the reader's timestamps. */
+        void onRead(String epc, int antenna, long firstSeenMicros, long lastSeenMicros, double rssi);
+
+        /** The link to the reader dropped; the reader keeps reading and holds its reports. */
+        default void onConnectionLost() {
+        }
+
+        /**
+         * The session was resumed at {@code resumedAtMicros} on the reader's clock. Reads
+         * stamped before it that arrive after a drop were held on the reader meanwhile.
+         */
+        default void onResumed(long resumedAtMicros) {
+        }
+    }
+
+    /** Connects and configures the reader; blocks until done. */
+    void connect(String address, ReadListener listener) throws Exception;
+
+    void start() throws Exception;
+
+    void stop() throws Exception;
+
+    void disconnect() throws Exception;
+
+    /**
+     * Re-establishes a session after {@link ReadListener#onConnectionLost()} and has the
+     * reader deliver the reports it held; blocks until the session is back.
+     */
+    void reconnect() throws Exception;
+
+    /**
+     * Uses {@code profile} from now on. Before {@link #connect} it is just kept for
+     * the connect; a connected reader is retuned in place, without reconnecting.
+     */
+    void applyProfile(ReaderProfile profile) throws Exception;
+
+    boolean isConnected();
+
+    /** The reader identity stored with each read (reader_ip). */
+    String getAddress();
+
+    static ReaderSource forAddress(String address, Util util) {
+        return forAddress(address, util, ReaderLifecycle.DEFAULT_KEEPALIVE_MILLIS);
+    }
+
+    static ReaderSource forAddress(String address, Util util, long keepaliveMillis) {
+        return address.startsWith(SIMULATED_SCHEME)
+                ? new SimulatedReaderSource(util) : new ImpinjReaderSource(util, keepaliveMillis);
+    }
+}
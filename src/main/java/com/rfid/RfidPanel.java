@@ -2,6 +2,8 @@ package com.rfid;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -11,17 +13,22 @@ import java.util.List;
 import java.util.Map;
 
 public class RfidPanel {
+    public static final int DEFAULT_MAX_LOG_LINES = 2000;
 
     private JPanel mainPanel;
     private JPanel readersPanel;
     private JButton addReaderButton, startAllButton, stopAllButton;
     private JTextArea logsArea;
+    private JLabel totalTagsLabel;
     private SyncHandler syncHandler;
+    private UiRefreshScheduler refreshScheduler;
+    private RfidTagProcessor tagProcessor;
 
     private List<ReaderCard> readerCards = new ArrayList<>();
     private ReaderConnectionManager connectionManager;
 
     private int nextReaderId = 1;
+    private int maxLogLines = DEFAULT_MAX_LOG_LINES;
 
     public RfidPanel() {}
 
@@ -38,6 +45,18 @@ public class RfidPanel {
         this.connectionManager = connectionManager;
     }
 
+    public void setRefreshScheduler(UiRefreshScheduler refreshScheduler) {
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    public void setTagProcessor(RfidTagProcessor tagProcessor) {
+        this.tagProcessor = tagProcessor;
+    }
+
+    public void setMaxLogLines(int maxLogLines) {
+        this.maxLogLines = Math.max(1, maxLogLines);
+    }
+
     public JPanel createRFIDPanel() {
         mainPanel = new JPanel(new BorderLayout(15, 15));
         mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -58,6 +77,13 @@ public class RfidPanel {
         leftButtons.add(startAllButton);
         leftButtons.add(stopAllButton);
 
+        totalTagsLabel = new JLabel("Total tags: 0");
+        leftButtons.add(totalTagsLabel);
+        if (refreshScheduler != null && connectionManager != null) {
+            refreshScheduler.register(connectionManager::getTotalTagCount,
+                    total -> totalTagsLabel.setText("Total tags: " + total));
+        }
+
         // Right button: Report
         JButton reportButton = new JButton("Report");
         reportButton.setFont(new Font("Segoe UI", Font.PLAIN, 13));
@@ -66,8 +92,35 @@ public class RfidPanel {
         reportButton.setFocusPainted(false);
         reportButton.addActionListener(e -> downloadTagsReport());
 
+        JButton excelReportButton = new JButton("Excel Report");
+        excelReportButton.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        excelReportButton.setFocusPainted(false);
+        excelReportButton.addActionListener(e -> downloadExcelReport());
+
+        JButton importButton = new JButton("Import");
+        importButton.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        importButton.setFocusPainted(false);
+        importButton.addActionListener(e -> importTagsReport());
+
+        JPanel rightButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        RfidTagProcessor.PendingReplay pending = tagProcessor == null ? null : tagProcessor.getPendingReplay();
+        if (pending != null) {
+            JButton replayButton = new JButton("Replay Journal");
+            replayButton.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+            replayButton.setFocusPainted(false);
+            replayButton.addActionListener(e -> replayJournal(replayButton));
+            rightButtons.add(replayButton);
+            appendLog(String.format(pending.crashed()
+                    ? "⚠ The last session did not shut down cleanly: %,d journaled reads may not be stored. Use Replay Journal to write them."
+                    : "⚠ %,d reads arrived after the last shutdown had stopped writing. Use Replay Journal to write them.",
+                    pending.reads()));
+        }
+        rightButtons.add(importButton);
+        rightButtons.add(excelReportButton);
+        rightButtons.add(reportButton);
+
         topPanel.add(leftButtons, BorderLayout.WEST);
-        topPanel.add(reportButton, BorderLayout.EAST);
+        topPanel.add(rightButtons, BorderLayout.EAST);
 
         mainPanel.add(topPanel, BorderLayout.NORTH);
 
@@ -97,17 +150,46 @@ public class RfidPanel {
         return mainPanel;
     }
 
+    private void replayJournal(JButton replayButton) {
+        replayButton.setEnabled(false);
+        SwingWorker<Long, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                return tagProcessor.replayPending();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    replayButton.setVisible(false);
+                } catch (Exception e) {
+                    appendLog("❌ Journal replay failed: " + e.getMessage());
+                    replayButton.setEnabled(true);
+                }
+            }
+        };
+        worker.execute();
+    }
+
     private void downloadTagsReport(){
         syncHandler.downloadReport();
     }
 
+    private void downloadExcelReport() {
+        syncHandler.downloadExcelReport();
+    }
+
+    private void importTagsReport() {
+        syncHandler.importReport();
+    }
+
     private void addNewReader() {
         int newId = getNextAvailableId();
 
         ReaderCard card = new ReaderCard(
                 "Reader " + newId,
                 connectionManager,
-                this::updateTotalTagCount,
                 this::appendLog
         );
 
@@ -117,7 +199,6 @@ public class RfidPanel {
             readerCards.remove(card);
             readersPanel.revalidate();
             readersPanel.repaint();
-            updateTotalTagCount();
             updateGlobalButtons();
         });
 
@@ -163,11 +244,6 @@ public class RfidPanel {
         connectionManager.stopAll();
     }
 
-    private void updateTotalTagCount() {
-        int total = readerCards.stream().mapToInt(ReaderCard::getTagCount).sum();
-        appendLog("Total tags: " + total);
-    }
-
     private void updateGlobalButtons() {
         boolean hasReaders = !readerCards.isEmpty();
         startAllButton.setEnabled(hasReaders);
@@ -175,6 +251,23 @@ public class RfidPanel {
     }
 
     public void appendLog(String text) {
-        SwingUtilities.invokeLater(() -> logsArea.append(text + "\n"));
+        SwingUtilities.invokeLater(() -> appendLogLines(text + "\n"));
+    }
+
+    // Must be called on the EDT; keeps only the newest maxLogLines lines
+    public void appendLogLines(String chunk) {
+        if (logsArea == null) return;
+        logsArea.append(chunk);
+
+        Element root = logsArea.getDocument().getDefaultRootElement();
+        int excess = root.getElementCount() - maxLogLines - 1;
+        if (excess > 0) {
+            try {
+                logsArea.getDocument().remove(0, root.getElement(excess - 1).getEndOffset());
+            } catch (BadLocationException e) {
+                logsArea.setText("");
+            }
+        }
+        logsArea.setCaretPosition(logsArea.getDocument().getLength());
     }
 }
\ No newline at end of file
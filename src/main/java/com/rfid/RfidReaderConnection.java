@@ -1,22 +1,55 @@
 package com.rfid;
 
-import com.impinj.octane.*;
-
 import javax.swing.*;
-import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 public class RfidReaderConnection {
 
-    private ImpinjReader reader;
+    private volatile ReaderSource source;
     private final RfidTagProcessor rfidTagProcessor;
     private final Consumer<Integer> tagCountConsumer;
     private final Util util;
+    private final ReaderLifecycle lifecycle;
+    private Metrics metrics;
+    private Metrics.Counter readCounter;
+    // Lifecycle calls for one reader run one at a time, in the order they were made
+    private final ReentrantLock lifecycleLock = new ReentrantLock(true);
 
     private final AtomicInteger tagCount = new AtomicInteger(0);
-    private boolean isConnected = false;
-    private boolean isStarted = false;
+    private volatile boolean isConnected = false;
+    private volatile boolean isStarted = false;
+    private volatile long connectMillis = -1;
+
+    private volatile String hostname;
+    private volatile boolean closing = false;
+    private volatile boolean reconnecting = false;
+    private volatile long lostAtNanos;
+    // While non-zero, reads stamped before it were held on the reader during the last drop
+    private volatile long recoverBeforeMicros = 0;
+    private final AtomicLong recoveredReads = new AtomicLong();
+    private volatile ReaderProfile profile = ReaderProfile.defaults();
+
+    private final ReaderSource.ReadListener readListener = new ReaderSource.ReadListener() {
+        @Override
+        public void onRead(String epc, int antenna, long firstSeenMicros, long lastSeenMicros, double rssi) {
+            RfidReaderConnection.this.onRead(epc, antenna, firstSeenMicros, lastSeenMicros, rssi);
+        }
+
+        @Override
+        public void onConnectionLost() {
+            RfidReaderConnection.this.onConnectionLost();
+        }
+
+        @Override
+        public void onResumed(long resumedAtMicros) {
+            recoverBeforeMicros = resumedAtMicros;
+        }
+    };
 
     public int getTagCount() {
         return tagCount.get();
@@ -25,118 +58,245 @@ public class RfidReaderConnection {
     public RfidReaderConnection(RfidTagProcessor rfidTagProcessor,
                                 Util util,
                                 Consumer<Integer> tagCountConsumer) {
+        this(rfidTagProcessor, util, new ReaderLifecycle(), tagCountConsumer);
+    }
+
+    public RfidReaderConnection(RfidTagProcessor rfidTagProcessor,
+                                Util util,
+                                ReaderLifecycle lifecycle,
+                                Consumer<Integer> tagCountConsumer) {
         this.rfidTagProcessor = rfidTagProcessor;
         this.util = util;
+        this.lifecycle = lifecycle;
         this.tagCountConsumer = tagCountConsumer;
     }
 
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
     public void connect(String hostname, Runnable onConnected, Runnable onFailed) {
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                try {
-                    reader = new ImpinjReader();
-                    util.addLog("Connecting to reader: " + hostname);
-                    reader.connect(hostname);
+        lifecycle.submit(() -> {
+            lifecycleLock.lock();
+            try {
+                ReaderSource connecting = ReaderSource.forAddress(hostname, util, lifecycle.getKeepaliveMillis());
+                source = connecting;
+                this.hostname = hostname;
+                connecting.applyProfile(profile);
+                util.addLog("Connecting to reader: " + hostname);
+                if (metrics != null) {
+                    // Looked up once here so counting a read costs no allocation
+                    readCounter = metrics.counter("rfid_reads_total", "Raw reads received per reader",
+                            "reader", hostname);
+                }
+                long start = System.nanoTime();
+                lifecycle.call("Connecting to " + hostname,
+                        () -> connecting.connect(hostname, readListener),
+                        lifecycle.getConnectTimeoutMillis());
+                long elapsed = System.nanoTime() - start;
+                connectMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+                if (metrics != null) {
+                    metrics.timer("rfid_reader_connect_seconds", "Time to connect and configure a reader",
+                            "reader", hostname).record(elapsed);
+                }
 
-                    if (!reader.isConnected()) {
-                        throw new RuntimeException("Could not connect to reader: " + hostname);
-                    }
+                isConnected = true;
+                util.addLog("⏱ " + hostname + " connected and configured in " + connectMillis + " ms");
+                SwingUtilities.invokeLater(onConnected);
 
-                    Settings settings = reader.queryDefaultSettings();
-                    configureReader(settings);
-                    reader.applySettings(settings);
+            } catch (Exception e) {
+                util.addLog("❌ Error connecting to reader: " + e.getMessage());
+                abandon();
+                SwingUtilities.invokeLater(onFailed);
+            } finally {
+                lifecycleLock.unlock();
+            }
+        });
+    }
 
-                    configureTagListener();
+    // A connect that failed or timed out may have left a half-open session behind
+    private void abandon() {
+        ReaderSource failed = source;
+        if (failed != null) {
+            lifecycle.submit(() -> {
+                try {
+                    failed.disconnect();
+                } catch (Exception ignored) {
+                }
+            });
+        }
+    }
 
-                    isConnected = true;
-                    SwingUtilities.invokeLater(onConnected);
+    private void onConnectionLost() {
+        if (!isConnected || closing || reconnecting) return;
+        reconnecting = true;
+        finishIncident();
+        lostAtNanos = System.nanoTime();
+        recoverBeforeMicros = Long.MAX_VALUE;
+        util.addLog("⚠ Connection to " + hostname + " lost, reconnecting");
+        if (metrics != null) {
+            metrics.counter("rfid_reader_disconnects_total", "Reader connections lost", "reader", hostname).inc();
+        }
+        lifecycle.submit(this::reconnect);
+    }
 
-                } catch (OctaneSdkException | RuntimeException e) {
-                    util.addLog("❌ Error connecting to reader: " + e.getMessage());
-                    SwingUtilities.invokeLater(onFailed);
+    // Retries with jittered exponential backoff until the reader is back or the user disconnects it
+    private void reconnect() {
+        long backoff = lifecycle.getReconnectInitialMillis();
+        for (int attempt = 1; !closing; attempt++) {
+            lifecycleLock.lock();
+            try {
+                if (closing) return;
+                lifecycle.call("Reconnecting to " + hostname, source::reconnect, lifecycle.getConnectTimeoutMillis());
+                long elapsed = System.nanoTime() - lostAtNanos;
+                reconnecting = false;
+                util.addLog(String.format("🔁 %s reconnected in %d ms (%d attempt(s))", hostname,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed), attempt));
+                if (metrics != null) {
+                    metrics.timer("rfid_reader_reconnect_seconds", "Time from losing a reader until it was back",
+                            "reader", hostname).record(elapsed);
                 }
-                return null;
+                return;
+            } catch (Exception e) {
+                util.addLog("⚠ Reconnect " + attempt + " to " + hostname + " failed: " + e.getMessage()
+                        + ", retrying in " + backoff + " ms");
+            } finally {
+                lifecycleLock.unlock();
             }
-        };
-        worker.execute();
-    }
-
-    private void configureReader(Settings settings) throws OctaneSdkException {
-        ReportConfig report = settings.getReport();
-        report.setIncludeAntennaPortNumber(true);
-        report.setIncludeFirstSeenTime(true);
-        report.setIncludeLastSeenTime(true);
-        report.setIncludePeakRssi(true);
-        report.setMode(ReportMode.Individual);
-
-        AntennaConfigGroup antennas = settings.getAntennas();
-        antennas.disableAll();
-
-        for (int i = 1; i <= 4; i++) {
-            antennas.getAntenna(i).setEnabled(true);
-            antennas.getAntenna(i).setTxPowerinDbm(30.0);
-            antennas.getAntenna(i).setRxSensitivityinDbm(-70);
-            util.addLog("Enabled antenna " + i);
+            try {
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, lifecycle.getReconnectMaxMillis());
+        }
+    }
+
+    // Reports the reads replayed after a drop, once live reads resume or the reader is stopped
+    private synchronized void finishIncident() {
+        if (recoverBeforeMicros == 0) return;
+        recoverBeforeMicros = 0;
+        long recovered = recoveredReads.getAndSet(0);
+        util.addLog(String.format("📦 %s: %,d held reads recovered after reconnect", hostname, recovered));
+        if (metrics != null) {
+            metrics.counter("rfid_reader_recovered_reads_total", "Reads held on the reader during a drop and replayed",
+                    "reader", hostname).add(recovered);
         }
     }
 
-    private void configureTagListener() {
-        reader.setTagReportListener((r, report) -> {
-            Instant now = Instant.now();
-            for (Tag tag : report.getTags()) {
-                TagDetail tagDetail = new TagDetail();
-                tagDetail.setTagId(tag.getEpc().toString());
-                tagDetail.setAntenna(tag.getAntennaPortNumber());
-                tagDetail.setFirstSeen(now);
-                tagDetail.setLastSeen(now);
-                tagDetail.setReader(r.getAddress());
+    private void onRead(String epc, int antenna, long firstSeenMicros, long lastSeenMicros, double rssi) {
+        long recoverBefore = recoverBeforeMicros;
+        if (recoverBefore != 0) {
+            if (lastSeenMicros < recoverBefore) recoveredReads.incrementAndGet();
+            else finishIncident();
+        }
+
+        TagDetail tagDetail = new TagDetail();
+        tagDetail.setTagId(epc);
+        tagDetail.setAntenna(antenna);
+        tagDetail.setFirstSeen(TagDetail.instantOfMicros(firstSeenMicros));
+        tagDetail.setLastSeen(TagDetail.instantOfMicros(lastSeenMicros));
+        tagDetail.setReader(source.getAddress());
 
-                rfidTagProcessor.enqueue(tagDetail);
+        rfidTagProcessor.enqueue(tagDetail, lastSeenMicros, rssi);
 
-                util.addLog(String.format("📡 Tag detected: %s, Antenna: %d, RSSI: %.2f",
-                        tag.getEpc(), tag.getAntennaPortNumber(), tag.getPeakRssiInDbm()));
+        util.log(LogCategory.TAG_READ, "📡 Tag detected: %s, Antenna: %d, RSSI: %.2f",
+                tagDetail.getTagId(), tagDetail.getAntenna(), rssi);
 
-                int currentCount = tagCount.incrementAndGet();
-                SwingUtilities.invokeLater(() -> tagCountConsumer.accept(currentCount));
+        tagCount.incrementAndGet();
+        Metrics.Counter counter = readCounter;
+        if (counter != null) {
+            counter.inc();
+        }
+    }
+
+    /**
+     * Retunes the reader with {@code profile} without reconnecting; inventory pauses
+     * only while the settings are applied. Before connecting it only picks the profile
+     * the connect will use.
+     */
+    public void applyProfile(ReaderProfile profile) {
+        this.profile = profile;
+        lifecycle.submit(() -> {
+            lifecycleLock.lock();
+            try {
+                if (source == null || !isConnected) return;
+                lifecycle.call("Applying profile " + profile.getName() + " to " + hostname,
+                        () -> source.applyProfile(profile), lifecycle.getConnectTimeoutMillis());
+                util.addLog("🎛 " + hostname + " now uses profile " + profile.getName());
+            } catch (Exception e) {
+                util.addLog("❌ Could not apply profile " + profile.getName() + " to " + hostname + ": " + e.getMessage());
+            } finally {
+                lifecycleLock.unlock();
             }
         });
     }
 
-    public void startReader() {
-        if (reader != null && !isStarted) {
-            try {
-                reader.start();
-                isStarted = true;
-                util.addLog("✅ Reader started.");
-            } catch (OctaneSdkException e) {
-                util.addLog("❌ Error starting reader: " + e.getMessage());
+    /** True once connected and not yet reading, i.e. when {@link #startReader()} would start it. */
+    public boolean canStart() {
+        return source != null && isConnected && !isStarted;
+    }
+
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+
+    /**
+     * Starts inventory; blocks until the reader has accepted the command. Callers
+     * bound it with {@link ReaderLifecycle#startTogether}.
+     */
+    public void startReader() throws Exception {
+        lifecycleLock.lock();
+        try {
+            if (!canStart()) {
+                return;
             }
+            source.start();
+            isStarted = true;
+            util.addLog("✅ Reader started.");
+        } finally {
+            lifecycleLock.unlock();
         }
     }
 
+    /** Stops inventory, waiting at most the lifecycle's stop timeout. */
     public void stopReader() {
-        if (reader != null && isStarted) {
-            try {
-                reader.stop();
-                isStarted = false;
-                util.addLog("⏹ Reader stopped.");
-            } catch (OctaneSdkException e) {
-                util.addLog("❌ Error stopping reader: " + e.getMessage());
+        lifecycleLock.lock();
+        try {
+            if (!reconnecting) finishIncident();
+            if (source != null && isStarted) {
+                try {
+                    lifecycle.call("Stopping " + source.getAddress(), source::stop, lifecycle.getStopTimeoutMillis());
+                    util.addLog("⏹ Reader stopped.");
+                } catch (Exception e) {
+                    util.addLog("❌ Error stopping reader: " + e.getMessage());
+                } finally {
+                    isStarted = false;
+                }
             }
+        } finally {
+            lifecycleLock.unlock();
         }
     }
 
     public void disconnect() {
-        if (reader != null && isConnected) {
-            try {
+        closing = true;
+        lifecycleLock.lock();
+        try {
+            if (source != null && isConnected) {
                 stopReader();
-                reader.disconnect();
-                isConnected = false;
-                util.addLog("🔌 Disconnected from reader.");
-            } catch (Exception e) {
-                util.addLog("❌ Error disconnecting reader: " + e.getMessage());
+                try {
+                    lifecycle.call("Disconnecting " + source.getAddress(), source::disconnect,
+                            lifecycle.getStopTimeoutMillis());
+                    util.addLog("🔌 Disconnected from reader.");
+                } catch (Exception e) {
+                    util.addLog("❌ Error disconnecting reader: " + e.getMessage());
+                } finally {
+                    isConnected = false;
+                }
             }
+        } finally {
+            lifecycleLock.unlock();
         }
     }
 
@@ -144,4 +304,4 @@ public class RfidReaderConnection {
         tagCount.set(0);
         SwingUtilities.invokeLater(() -> tagCountConsumer.accept(0));
     }
-}
\ No newline at end of file
+}
@@ -1,66 +1,614 @@
 package com.rfid;
 
-import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Moves reads from the readers into storage. Reads are routed by a hash of
+ * (reader, EPC) to one of several lanes, each with its own queue, consumer thread,
+ * batching and (through the pool) storage connection, so a slow write for one
+ * reader's tags does not hold up the others while every tag keeps its order.
+ */
 public class RfidTagProcessor {
-    private final BlockingQueue<TagDetail> queue = new LinkedBlockingQueue<>();
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_LINGER_MILLIS = 50;
+    public static final int DEFAULT_LANES = 4;
+    public static final long DEFAULT_RETRY_INITIAL_MILLIS = 100;
+    public static final long DEFAULT_RETRY_MAX_MILLIS = 5_000;
+
+    public record LaneStats(int lane, int queued, int capacity, int highWaterMark, long lagMillis, long batches,
+                            long rowsWritten) {
+    }
+
+    /**
+     * Journaled reads in [fromOffset, toOffset) that may never have reached storage:
+     * the whole last session if it crashed, or reads that arrived after a clean stop.
+     */
+    public record PendingReplay(long fromOffset, long toOffset, boolean crashed) {
+        public long reads() {
+            return toOffset - fromOffset;
+        }
+    }
+
+    private final Lane[] lanes;
     private final TagStorage storage;
+    private final TagStateCache cache;
     private final Util util;
+    private final int batchSize;
+    private final long lingerMillis;
     private volatile boolean running = true;
+    private final CountDownLatch cacheWarmed = new CountDownLatch(1);
+    private final AtomicInteger liveLanes;
+    private ReadJournal journal;
+    private volatile PendingReplay pendingReplay;
+    private PassDetector passDetector;
+    private long journalFailures = 0;
+    private volatile Metrics.Histogram persistLatency;
+    private volatile long retryInitialMillis = DEFAULT_RETRY_INITIAL_MILLIS;
+    private volatile long retryMaxMillis = DEFAULT_RETRY_MAX_MILLIS;
+
+    public RfidTagProcessor(TagStorage storage, Util util) {
+        this(storage, new TagStateCache(),
+                new TagRingBuffer(TagRingBuffer.DEFAULT_CAPACITY, TagRingBuffer.OverflowPolicy.COALESCE),
+                util, DEFAULT_BATCH_SIZE, DEFAULT_LINGER_MILLIS);
+    }
+
+    public RfidTagProcessor(TagStorage storage, TagStateCache cache, TagRingBuffer queue,
+                            Util util, int batchSize, long lingerMillis) {
+        this(storage, cache, List.of(queue), util, batchSize, lingerMillis);
+    }
 
-    public RfidTagProcessor(TagStorage storage,Util util) {
+    /** One lane per queue. */
+    public RfidTagProcessor(TagStorage storage, TagStateCache cache, List<TagRingBuffer> queues,
+                            Util util, int batchSize, long lingerMillis) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        if (queues.isEmpty()) {
+            throw new IllegalArgumentException("At least one lane is required");
+        }
         this.storage = storage;
+        this.cache = cache;
         this.util = util;
-        startAsyncConsumer();
+        this.batchSize = batchSize;
+        this.lingerMillis = Math.max(0, lingerMillis);
+        this.lanes = new Lane[queues.size()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, queues.get(i));
+        }
+        this.liveLanes = new AtomicInteger(lanes.length);
+        for (Lane lane : lanes) {
+            lane.start();
+        }
+    }
+
+    public static RfidTagProcessor fromConfig(AppConfig config, TagStorage storage, Util util) {
+        TagRingBuffer.OverflowPolicy policy;
+        try {
+            policy = TagRingBuffer.OverflowPolicy.valueOf(
+                    config.getString("processor.overflowPolicy", "COALESCE").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown processor.overflowPolicy, using COALESCE");
+            policy = TagRingBuffer.OverflowPolicy.COALESCE;
+        }
+        int laneCount = Math.max(1, config.getInt("processor.lanes", DEFAULT_LANES));
+        // Every lane holds a connection while it writes, and every chunk upload holds one for its whole round trip
+        int syncParallelism = Math.max(1, config.getInt("sync.parallelism", ChunkedSync.DEFAULT_PARALLELISM));
+        if (storage instanceof TagStorageService postgresStorage
+                && laneCount + syncParallelism >= postgresStorage.getPoolStats().maxSize()) {
+            System.err.println("processor.lanes=" + laneCount + " plus sync.parallelism=" + syncParallelism
+                    + " leaves no pooled connection for the UI; raise pool.maxSize");
+        }
+        List<TagRingBuffer> queues = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            // Capacity is per lane
+            queues.add(new TagRingBuffer(config.getInt("processor.queueCapacity", TagRingBuffer.DEFAULT_CAPACITY), policy));
+        }
+        RfidTagProcessor processor = new RfidTagProcessor(storage,
+                TagStateCache.fromConfig(config),
+                queues,
+                util,
+                config.getInt("processor.batchSize", DEFAULT_BATCH_SIZE),
+                config.getLong("processor.lingerMillis", DEFAULT_LINGER_MILLIS));
+        processor.setRetryBackoff(config.getLong("processor.retryInitialMillis", DEFAULT_RETRY_INITIAL_MILLIS),
+                config.getLong("processor.retryMaxMillis", DEFAULT_RETRY_MAX_MILLIS));
+        if (config.getBoolean("journal.enabled", true)) {
+            try {
+                processor.setJournal(ReadJournal.fromConfig(config));
+            } catch (IOException e) {
+                System.err.println("Read journal disabled: " + e.getMessage());
+            }
+        }
+        if (config.getBoolean("pass.enabled", true)) {
+            processor.setPassDetector(PassDetector.fromConfig(config, util, processor::enqueue));
+        }
+        return processor;
+    }
+
+    /**
+     * Also picks up the journal's checkpoint: reads after it may be missing from
+     * storage and are offered through {@link #getPendingReplay()}. From now until
+     * {@link #stop()} the checkpoint marks this session as running.
+     */
+    public void setJournal(ReadJournal journal) {
+        this.journal = journal;
+        if (journal == null) {
+            return;
+        }
+        long sessionStart = journal.getNextOffset();
+        ReadJournal.Checkpoint last = journal.readCheckpoint();
+        if (last != null && last.offset() < sessionStart) {
+            pendingReplay = new PendingReplay(last.offset(), sessionStart, !last.clean());
+        }
+        checkpointJournal(false);
+    }
+
+    public PendingReplay getPendingReplay() {
+        return pendingReplay;
+    }
+
+    /** Replays the reads of {@link #getPendingReplay()} and returns how many there were. */
+    public long replayPending() throws IOException {
+        PendingReplay pending = pendingReplay;
+        if (journal == null || pending == null) {
+            return 0;
+        }
+        long replayed = replayJournal(pending.fromOffset(), pending.toOffset());
+        pendingReplay = null;
+        checkpointJournal(false);
+        return replayed;
+    }
+
+    // Until a pending replay has run, the checkpoint keeps pointing at it
+    private void checkpointJournal(boolean clean) {
+        PendingReplay pending = pendingReplay;
+        try {
+            journal.writeCheckpoint(pending != null ? pending.fromOffset() : journal.getNextOffset(),
+                    clean && pending == null);
+        } catch (IOException e) {
+            util.addLog("⚠ Could not checkpoint read journal: " + e.getMessage());
+        }
+    }
+
+    public ReadJournal getJournal() {
+        return journal;
+    }
+
+    /** Reads then reach the queue as one event per pass instead of one per read. */
+    public void setPassDetector(PassDetector passDetector) {
+        this.passDetector = passDetector;
+    }
+
+    public PassDetector getPassDetector() {
+        return passDetector;
+    }
+
+    /** Backoff between attempts to write a batch that failed, doubling from {@code initialMillis} up to {@code maxMillis}. */
+    public void setRetryBackoff(long initialMillis, long maxMillis) {
+        this.retryInitialMillis = Math.max(1, initialMillis);
+        this.retryMaxMillis = Math.max(this.retryInitialMillis, maxMillis);
+    }
+
+    public void setMetrics(Metrics metrics) {
+        metrics.gauge("rfid_queue_depth", "Reads waiting in the processor queues", () -> getQueueStats().occupancy());
+        metrics.gauge("rfid_queue_capacity", "Capacity of the processor queues", () -> getQueueStats().capacity());
+        metrics.counter("rfid_queue_published_total", "Reads published to the processor queues",
+                () -> getQueueStats().published());
+        metrics.counter("rfid_queue_dropped_total", "Reads dropped because a processor queue was full",
+                () -> getQueueStats().dropped());
+        metrics.counter("rfid_queue_coalesced_total", "Reads merged into a read of the same tag still queued",
+                () -> getQueueStats().coalesced());
+        for (Lane lane : lanes) {
+            String index = String.valueOf(lane.index);
+            metrics.gauge("rfid_lane_queue_depth", "Reads waiting in one processor lane",
+                    () -> lane.queue.size(), "lane", index);
+            metrics.gauge("rfid_lane_queue_capacity", "Capacity of one processor lane's queue",
+                    () -> lane.queue.capacity(), "lane", index);
+            metrics.gauge("rfid_lane_queue_high_water", "Most reads one processor lane has held at once",
+                    () -> lane.queue.getStats().highWaterMark(), "lane", index);
+            metrics.gauge("rfid_lane_lag_seconds", "Age of the oldest read a processor lane has not yet written",
+                    () -> lane.lagNanos(System.nanoTime()) * Metrics.NANOS, "lane", index);
+            metrics.counter("rfid_lane_rows_written_total", "Rows written by one processor lane",
+                    () -> lane.rowsWritten, "lane", index);
+        }
+        metrics.gauge("rfid_tag_cache_entries", "Tags held in the tag state cache", () -> cache.size());
+        metrics.counter("rfid_passes_total", "Passes emitted by the pass detector",
+                () -> passDetector == null ? 0 : passDetector.getStats().passes());
+        metrics.gauge("rfid_open_passes", "Passes still collecting reads",
+                () -> passDetector == null ? 0 : passDetector.getStats().openPasses());
+        persistLatency = metrics.timer("rfid_enqueue_to_persist_seconds",
+                "Time from a read entering the processor queue until its batch was written");
     }
 
     public void enqueue(TagDetail tag) {
-        queue.offer(tag);
-        util.addLog("🟢 Tag queued: " + tag.getTagId());
+        tag.setEnqueuedNanos(System.nanoTime());
+        laneFor(tag).queue.publish(tag);
+    }
+
+    private Lane laneFor(TagDetail tag) {
+        if (lanes.length == 1) {
+            return lanes[0];
+        }
+        int h = 31 * Objects.hashCode(tag.getReader()) + Objects.hashCode(tag.getTagId());
+        return lanes[Math.floorMod(h ^ (h >>> 16), lanes.length)];
+    }
+
+    /**
+     * Journals the raw read first, so it survives a crash of the app or the
+     * database, then hands it to the pass detector or, without one, straight to
+     * the processor queue.
+     */
+    public void enqueue(TagDetail tag, long readerTimeMicros, double rssi) {
+        ReadJournal j = journal;
+        if (j != null) {
+            try {
+                j.append(tag.getTagId(), tag.getAntenna(), tag.getReader(), readerTimeMicros, rssi);
+            } catch (RuntimeException e) {
+                // Keep reading; losing the journal must not lose the read as well
+                if (journalFailures++ % 10_000 == 0) {
+                    util.addLog("⚠ Could not journal read: " + e.getMessage());
+                }
+            }
+        }
+        PassDetector detector = passDetector;
+        if (detector != null) {
+            detector.offer(tag.getReader(), tag.getTagId(), tag.getAntenna(), readerTimeMicros, rssi);
+        } else {
+            enqueue(tag);
+        }
     }
 
-    private void startAsyncConsumer() {
-        Thread consumerThread = new Thread(() -> {
-            while (running) {
+    /**
+     * Re-runs the journaled reads in [{@code fromOffset}, {@code toOffset}) through
+     * the pipeline, e.g. to rebuild tag_details after a crash. Returns how many
+     * reads were replayed.
+     */
+    public long replayJournal(long fromOffset, long toOffset) throws IOException {
+        if (journal == null) {
+            return 0;
+        }
+        PassDetector detector = passDetector;
+        long[] replayed = {0};
+        long next = journal.replay(fromOffset, (offset, read) -> {
+            if (offset >= toOffset) {
+                return false;
+            }
+            replayed[0]++;
+            if (detector != null) {
+                detector.offer(read.reader(), read.epc(), read.antenna(), read.readerTimeMicros(), read.rssi());
+            } else {
+                enqueue(read.toTagDetail());
+            }
+            return true;
+        });
+        if (detector != null) {
+            detector.flush();
+        }
+        util.addLog(String.format("🔁 Replayed %,d journaled reads (offsets %d..%d)", replayed[0], fromOffset,
+                Math.min(next, toOffset)));
+        return replayed[0];
+    }
+
+    private final class Lane implements Runnable {
+        final int index;
+        final TagRingBuffer queue;
+        // Cache write-backs that another lane drained but this lane owns
+        final Queue<TagDetail> handoff = new ConcurrentLinkedQueue<>();
+        Thread thread;
+        volatile long inFlightSinceNanos = 0;
+        volatile long batches = 0;
+        volatile long rowsWritten = 0;
+
+        Lane(int index, TagRingBuffer queue) {
+            this.index = index;
+            this.queue = queue;
+        }
+
+        void start() {
+            thread = new Thread(this, lanes.length == 1 ? "TagProcessor-Thread" : "TagProcessor-Thread-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            if (index == 0) {
+                warmCache();
+            } else {
+                awaitCacheWarm();
+            }
+            List<TagDetail> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
                 try {
-                    TagDetail tag = queue.take();
-                    processTag(tag);
+                    if (collectBatch(queue, batch)) {
+                        processBatch(this, batch);
+                    } else {
+                        // Quiet field: write back last_seen updates held below the flush granularity
+                        persist(this, claim(this, cache.drainDirty()));
+                    }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
+                    break;
                 } catch (Exception e) {
-                    util.addLog("❌ Error processing tag: " + e.getMessage());
+                    util.addLog("❌ Error processing tag batch: " + e.getMessage());
+                } finally {
+                    batch.clear();
+                    inFlightSinceNanos = 0;
+                }
+            }
+            // Persist whatever was still queued when the consumer was stopped
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                processBatch(this, batch);
+            }
+            persist(this, claim(this, cache.drainDirty()));
+            if (liveLanes.decrementAndGet() == 0) {
+                // Last lane out writes what was handed to lanes that had already stopped
+                List<TagDetail> rest = new ArrayList<>(cache.drainDirty());
+                for (Lane lane : lanes) {
+                    drainHandoff(lane, rest);
+                }
+                persist(this, rest);
+                if (journal != null) {
+                    checkpointJournal(true);
+                    journal.close();
                 }
             }
-        }, "TagProcessor-Thread");
-        consumerThread.setDaemon(true);
-        consumerThread.start();
+        }
+
+        long lagNanos(long now) {
+            long oldest = inFlightSinceNanos;
+            TagDetail head = queue.peek();
+            if (head != null && head.getEnqueuedNanos() != 0 && (oldest == 0 || head.getEnqueuedNanos() - oldest < 0)) {
+                oldest = head.getEnqueuedNanos();
+            }
+            return oldest == 0 ? 0 : Math.max(0, now - oldest);
+        }
+    }
+
+    /** Keeps the write-backs this lane owns and hands the rest to their lanes, so each row has one writer. */
+    private List<TagDetail> claim(Lane lane, List<TagDetail> drained) {
+        List<TagDetail> own = new ArrayList<>();
+        for (TagDetail tag : drained) {
+            Lane owner = laneFor(tag);
+            if (owner == lane) {
+                own.add(tag);
+            } else {
+                owner.handoff.add(tag);
+            }
+        }
+        drainHandoff(lane, own);
+        return own;
+    }
+
+    private static void drainHandoff(Lane lane, List<TagDetail> target) {
+        TagDetail tag;
+        while ((tag = lane.handoff.poll()) != null) {
+            target.add(tag);
+        }
     }
 
-    private void processTag(TagDetail tag) {
+    private void warmCache() {
         try {
-            Optional<TagDetail> existing = storage.findByTagIdAndReader(tag.getTagId(),tag.getReader());
+            int loaded = cache.warm(storage);
+            util.addLog("🗂 Tag cache warmed with " + loaded + " stored tags");
+        } catch (Exception e) {
+            util.addLog("⚠ Could not warm tag cache: " + e.getMessage());
+        } finally {
+            cacheWarmed.countDown();
+        }
+    }
+
+    private void awaitCacheWarm() {
+        try {
+            cacheWarmed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the first read, then keeps draining until the batch is full or
+     * the linger time has elapsed. Returns false if nothing arrived.
+     */
+    private boolean collectBatch(TagRingBuffer queue, List<TagDetail> batch) throws InterruptedException {
+        TagDetail first = queue.poll(250, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            TagDetail next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+
+    private void processBatch(Lane lane, List<TagDetail> batch) {
+        long oldest = 0;
+        for (TagDetail read : batch) {
+            long enqueued = read.getEnqueuedNanos();
+            if (enqueued != 0 && (oldest == 0 || enqueued - oldest < 0)) {
+                oldest = enqueued;
+            }
+        }
+        lane.inFlightSinceNanos = oldest;
 
-            if (existing.isPresent()) {
-                TagDetail t = existing.get();
-                t.setLastSeen(tag.getLastSeen());
-                storage.save(t);
-                util.addLog("🔄 Updated existing tag " + t.getTagId());
+        List<TagDetail> changed = claim(lane, cache.drainEvicted());
+        for (TagDetail tag : fold(batch).values()) {
+            TagDetail toWrite = cache.apply(tag);
+            if (toWrite != null) {
+                changed.add(toWrite);
+            }
+        }
+        boolean saved = persist(lane, changed);
+        if (saved) {
+            util.log(LogCategory.STORAGE, "✅ Saved %d tags (%d reads)", changed.size(), batch.size());
+        }
+        Metrics.Histogram latency = persistLatency;
+        if (latency != null && (saved || changed.isEmpty())) {
+            long now = System.nanoTime();
+            for (TagDetail read : batch) {
+                if (read.getEnqueuedNanos() != 0) {
+                    latency.record(now - read.getEnqueuedNanos());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the batch, retrying it with backoff until storage takes it. Meanwhile the
+     * lane takes no new reads, so during a stall its queue fills and the overflow policy
+     * decides what is dropped; if the app exits first, the journal still holds the reads.
+     * Returns false only when there was nothing to write or the lane was interrupted.
+     */
+    private boolean persist(Lane lane, List<TagDetail> changed) {
+        if (changed.isEmpty()) {
+            return false;
+        }
+        long backoff = retryInitialMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                storage.saveAll(changed);
+                lane.batches++;
+                lane.rowsWritten += changed.size();
+                if (attempt > 1) {
+                    util.addLog("✅ Saved batch of " + changed.size() + " tags after " + attempt + " attempts");
+                }
+                return true;
+            } catch (Exception ex) {
+                util.addLog("⚠ Error saving batch of " + changed.size() + " tags, retrying in " + backoff + " ms: "
+                        + ex.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                changed.forEach(cache::invalidate);
+                return false;
+            }
+            backoff = Math.min(backoff * 2, retryMaxMillis);
+        }
+    }
+
+    /**
+     * Collapses repeated reads of the same (tag_id, reader_ip) into a single row
+     * holding the earliest first_seen and the latest last_seen.
+     */
+    static Map<String, TagDetail> fold(List<TagDetail> reads) {
+        Map<String, TagDetail> folded = new LinkedHashMap<>();
+        for (TagDetail read : reads) {
+            String key = read.getTagId() + "|" + read.getReader();
+            TagDetail existing = folded.get(key);
+            if (existing == null) {
+                folded.put(key, new TagDetail(read.getTagId(), read.getAntenna(),
+                        read.getFirstSeen(), read.getLastSeen(), read.getReader()));
             } else {
-                storage.save(tag);
-                util.addLog("✅ Inserted new tag " + tag.getTagId());
+                existing.setFirstSeen(earliest(existing.getFirstSeen(), read.getFirstSeen()));
+                existing.setLastSeen(latest(existing.getLastSeen(), read.getLastSeen()));
             }
-        } catch (Exception ex) {
-            util.addLog("⚠ Error saving tag " + tag.getTagId() + ": " + ex.getMessage());
         }
+        return folded;
+    }
+
+    private static Instant earliest(Instant a, Instant b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return b.isBefore(a) ? b : a;
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return b.isAfter(a) ? b : a;
     }
 
     public void stop() {
+        if (passDetector != null) {
+            // Passes still open are complete as far as we will ever know
+            passDetector.stop();
+        }
         running = false;
     }
 
+    /**
+     * Waits for every lane to finish after {@link #stop()}, i.e. until the queued
+     * reads and the cache's pending write-backs are in storage. The lanes are daemon
+     * threads, so on exit nothing else waits for them. Returns false on timeout.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            TimeUnit.NANOSECONDS.timedJoin(lane.thread, Math.max(1, deadline - System.nanoTime()));
+            if (lane.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queue statistics summed over all lanes. The lanes peak at different times, so their
+     * high-water marks do not add up and are left at 0 here; see {@link #getLaneStats()}.
+     */
+    public TagRingBuffer.Stats getQueueStats() {
+        int occupancy = 0, capacity = 0;
+        long published = 0, dropped = 0, coalesced = 0, blockedMillis = 0;
+        for (Lane lane : lanes) {
+            TagRingBuffer.Stats stats = lane.queue.getStats();
+            occupancy += stats.occupancy();
+            capacity += stats.capacity();
+            published += stats.published();
+            dropped += stats.dropped();
+            coalesced += stats.coalesced();
+            blockedMillis += stats.blockedMillis();
+        }
+        return new TagRingBuffer.Stats(occupancy, capacity, 0, published, dropped, coalesced, blockedMillis);
+    }
+
+    public List<LaneStats> getLaneStats() {
+        long now = System.nanoTime();
+        List<LaneStats> stats = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            TagRingBuffer.Stats queueStats = lane.queue.getStats();
+            stats.add(new LaneStats(lane.index, queueStats.occupancy(), queueStats.capacity(),
+                    queueStats.highWaterMark(), TimeUnit.NANOSECONDS.toMillis(lane.lagNanos(now)), lane.batches,
+                    lane.rowsWritten));
+        }
+        return stats;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public TagStateCache getCache() {
+        return cache;
+    }
+
     public TagStorage getStorage() {
         return storage;
     }
-}
\ No newline at end of file
+}
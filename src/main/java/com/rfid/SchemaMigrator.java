@@ -0,0 +1,161 @@
+package com.rfid;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date. Applied versions are recorded in
+ * schema_version; each pending migration runs in its own transaction under an
+ * advisory lock, so two app instances starting together apply it only once.
+ * Add new migrations at the end of {@link #MIGRATIONS}, never edit applied ones.
+ */
+public class SchemaMigrator {
+    private static final long LOCK_KEY = 0x7266_6964L;
+
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, List<Step> steps) {
+    }
+
+    private static Step sql(String statement) {
+        return conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(statement);
+            }
+        };
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            // Databases created before versioning already have this, hence IF NOT EXISTS
+            new Migration(1, "baseline tag_details", List.of(
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS tag_details (
+                            id SERIAL PRIMARY KEY,
+                            tag_id VARCHAR(255) NOT NULL,
+                            antenna INT NOT NULL,
+                            first_seen TIMESTAMP,
+                            last_seen TIMESTAMP,
+                            reader_ip VARCHAR(255) NOT NULL,
+                            status VARCHAR(20) NOT NULL DEFAULT 'NOT_SYNCED'
+                                        CHECK (status IN ('SYNCED', 'NOT_SYNCED')),
+                            CONSTRAINT unique_tag UNIQUE(tag_id, reader_ip)
+                        )
+                        """)
+            )),
+            // Every insert or real change takes the next change_seq, which background sync pages by
+            new Migration(2, "change_seq for background sync", List.of(
+                    sql("CREATE SEQUENCE IF NOT EXISTS tag_details_change_seq"),
+                    sql("ALTER TABLE tag_details ADD COLUMN IF NOT EXISTS change_seq BIGINT "
+                            + "DEFAULT nextval('tag_details_change_seq')"),
+                    sql("UPDATE tag_details SET change_seq = nextval('tag_details_change_seq') WHERE change_seq IS NULL")
+            )),
+            new Migration(3, "events and tag_details partitioned by event", List.of(
+                    sql("""
+                        CREATE TABLE events (
+                            id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+                            name VARCHAR(255) NOT NULL UNIQUE,
+                            created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+                        )
+                        """),
+                    // Free every name the new table reuses before creating it
+                    sql("ALTER TABLE tag_details RENAME TO tag_details_v1"),
+                    sql("ALTER TABLE tag_details_v1 RENAME CONSTRAINT unique_tag TO unique_tag_v1"),
+                    sql("ALTER TABLE tag_details_v1 RENAME CONSTRAINT tag_details_pkey TO tag_details_v1_pkey"),
+                    sql("ALTER SEQUENCE tag_details_id_seq RENAME TO tag_details_v1_id_seq"),
+                    sql("DROP INDEX IF EXISTS idx_tag_details_reader_tag"),
+                    sql("DROP INDEX IF EXISTS idx_tag_details_unsynced"),
+                    sql("""
+                        CREATE TABLE tag_details (
+                            id BIGINT GENERATED ALWAYS AS IDENTITY,
+                            event_id BIGINT NOT NULL REFERENCES events (id),
+                            tag_id VARCHAR(255) NOT NULL,
+                            antenna INT NOT NULL,
+                            first_seen TIMESTAMP,
+                            last_seen TIMESTAMP,
+                            reader_ip VARCHAR(255) NOT NULL,
+                            status VARCHAR(20) NOT NULL DEFAULT 'NOT_SYNCED'
+                                        CHECK (status IN ('SYNCED', 'NOT_SYNCED')),
+                            change_seq BIGINT NOT NULL DEFAULT nextval('tag_details_change_seq'),
+                            PRIMARY KEY (event_id, id),
+                            CONSTRAINT unique_tag UNIQUE (event_id, tag_id, reader_ip)
+                        ) PARTITION BY LIST (event_id)
+                        """),
+                    // Existing tags become the default event, created like any later one
+                    conn -> {
+                        long eventId = TagStorageService.createEvent(conn, TagStorageService.DEFAULT_EVENT_NAME);
+                        try (PreparedStatement ps = conn.prepareStatement("""
+                                INSERT INTO tag_details (event_id, tag_id, antenna, first_seen, last_seen, reader_ip,
+                                                         status, change_seq)
+                                SELECT ?, tag_id, antenna, first_seen, last_seen, reader_ip, status,
+                                       COALESCE(change_seq, nextval('tag_details_change_seq'))
+                                FROM tag_details_v1
+                                """)) {
+                            ps.setLong(1, eventId);
+                            ps.executeUpdate();
+                        }
+                    },
+                    sql("DROP TABLE tag_details_v1"),
+                    sql("CREATE INDEX idx_tag_details_reader_tag ON tag_details (event_id, reader_ip, tag_id)"),
+                    sql("CREATE INDEX idx_tag_details_unsynced ON tag_details (event_id, reader_ip, change_seq) "
+                            + "WHERE status = 'NOT_SYNCED'")
+            ))
+    );
+
+    /** Applies every pending migration and returns the resulting schema version. */
+    public int migrate(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS schema_version (
+                            version INT PRIMARY KEY,
+                            description VARCHAR(255) NOT NULL,
+                            applied_at TIMESTAMPTZ NOT NULL DEFAULT now()
+                        )
+                        """);
+            }
+            conn.commit();
+
+            int current = 0;
+            for (Migration migration : MIGRATIONS) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+                    if (!isApplied(conn, migration.version())) {
+                        for (Step step : migration.steps()) {
+                            step.apply(conn);
+                        }
+                        try (PreparedStatement ps = conn.prepareStatement(
+                                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                            ps.setInt(1, migration.version());
+                            ps.setString(2, migration.description());
+                            ps.executeUpdate();
+                        }
+                        System.out.println("Applied schema migration " + migration.version() + ": "
+                                + migration.description());
+                    }
+                }
+                conn.commit();
+                current = migration.version();
+            }
+            return current;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private static boolean isApplied(Connection conn, int version) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            ps.setInt(1, version);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.rfid;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic reader for load tests, selected by a {@code sim://name?param=value...}
+ * address in the reader card. Each simulated reader is one timing point with four
+ * antennas; start several with different {@code offsetSec} for a course.
+ *
+ * <p>Runners start in waves, run {@code laps} laps of roughly {@code lapSec} at a
+ * pace spread by {@code paceSpread}, in packs of {@code packSize} whose members
+ * run closer together the higher {@code bunching} (0..1) is. Every crossing is a
+ * pass of {@code dwellMs} with {@code readRate} reads/s per tag and a parabolic
+ * RSSI peak at the crossing. Optional read bursts ({@code burstEverySec},
+ * {@code burstMs}, {@code burstFactor}) and network drops ({@code reconnectEverySec},
+ * {@code outageMs}): the link goes down, the reader keeps reading and holds its
+ * reports, refuses {@link #reconnect()} until the outage is over and then replays
+ * what it held. {@code speed} runs the race clock faster than real time. Of a
+ * {@link ReaderProfile} only the enabled antennas and EPC prefixes apply.
+ */
+public class SimulatedReaderSource implements ReaderSource {
+    private static final long TICK_MILLIS = 10;
+
+    private final Util util;
+    private final Map<String, String> params = new HashMap<>();
+
+    private String address;
+    private ReadListener listener;
+    private volatile boolean connected = false;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // Scenario
+    private String[] epcs;
+    private int[] passRunner;
+    private long[] passMicros;
+    private long dwellMicros;
+    private double readRate;
+    private double speed;
+    private long burstEveryMicros;
+    private long burstMicros;
+    private double burstFactor;
+    private long reconnectEveryMicros;
+    private long outageMicros;
+    private Random random;
+
+    // Race clock, advanced only while started
+    private long epochMicros;
+    private long simMicros = 0;
+    private int nextPass = 0;
+    private final List<Integer> active = new ArrayList<>();
+    private final List<long[]> held = new ArrayList<>();
+    private volatile boolean inOutage = false;
+    private volatile boolean linkDown = false;
+    private volatile boolean resumeRequested = false;
+    private volatile ReaderProfile profile = ReaderProfile.defaults();
+    private long reads = 0;
+    private boolean finished = false;
+
+    public SimulatedReaderSource(Util util) {
+        this.util = util;
+    }
+
+    @Override
+    public void connect(String address, ReadListener listener) {
+        URI uri = URI.create(address);
+        this.address = SIMULATED_SCHEME + uri.getHost();
+        this.listener = listener;
+        if (uri.getRawQuery() != null) {
+            for (String pair : uri.getRawQuery().split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        buildScenario();
+        epochMicros = System.currentTimeMillis() * 1_000;
+        connected = true;
+        util.addLog(String.format("🧪 Simulated reader %s: %,d runners, %,d passes", this.address,
+                epcs.length, passMicros.length));
+    }
+
+    private void buildScenario() {
+        int runners = intParam("runners", 500);
+        int waves = Math.max(1, intParam("waves", 1));
+        double waveGapSec = doubleParam("waveGapSec", 60);
+        double offsetSec = doubleParam("offsetSec", 0);
+        int laps = Math.max(1, intParam("laps", 1));
+        double lapSec = doubleParam("lapSec", 300);
+        double paceSpread = doubleParam("paceSpread", 0.15);
+        double bunching = Math.min(1, Math.max(0, doubleParam("bunching", 0.3)));
+        int packSize = Math.max(1, intParam("packSize", 20));
+        dwellMicros = (long) (doubleParam("dwellMs", 1_500) * 1_000);
+        readRate = doubleParam("readRate", 50);
+        speed = Math.max(0.01, doubleParam("speed", 1));
+        burstEveryMicros = (long) (doubleParam("burstEverySec", 0) * 1_000_000);
+        burstMicros = (long) (doubleParam("burstMs", 2_000) * 1_000);
+        burstFactor = doubleParam("burstFactor", 5);
+        reconnectEveryMicros = (long) (doubleParam("reconnectEverySec", 0) * 1_000_000);
+        outageMicros = (long) (doubleParam("outageMs", 3_000) * 1_000);
+        random = new Random(intParam("seed", 42));
+
+        epcs = new String[runners];
+        double[] packPace = new double[(runners + packSize - 1) / packSize];
+        for (int p = 0; p < packPace.length; p++) {
+            packPace[p] = 1 + paceSpread * random.nextGaussian();
+        }
+        int passes = runners * laps;
+        long[] times = new long[passes];
+        for (int r = 0; r < runners; r++) {
+            epcs[r] = String.format("E28011700000%012d", r);
+            double pace = packPace[r / packSize] + (1 - bunching) * paceSpread * random.nextGaussian();
+            double start = (r % waves) * waveGapSec + offsetSec;
+            for (int lap = 0; lap < laps; lap++) {
+                int i = r * laps + lap;
+                times[i] = (long) ((start + lap * lapSec * Math.max(0.3, pace)) * 1_000_000);
+            }
+        }
+        // Sort passes by crossing time
+        Integer[] idx = new Integer[passes];
+        for (int i = 0; i < passes; i++) idx[i] = i;
+        Arrays.sort(idx, (a, b) -> Long.compare(times[a], times[b]));
+        passRunner = new int[passes];
+        passMicros = new long[passes];
+        for (int i = 0; i < passes; i++) {
+            passRunner[i] = idx[i] / laps;
+            passMicros[i] = times[idx[i]];
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!connected || running) return;
+        running = true;
+        thread = new Thread(this::run, "SimReader-" + address);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            t = thread;
+            thread = null;
+        }
+        if (t != null) t.join();
+    }
+
+    @Override
+    public void disconnect() throws InterruptedException {
+        stop();
+        connected = false;
+    }
+
+    @Override
+    public void reconnect() throws IOException {
+        if (inOutage && running) {
+            throw new IOException(address + " is unreachable (simulated outage)");
+        }
+        if (linkDown) {
+            // The race thread replays the held reads on its next tick
+            resumeRequested = true;
+        }
+        connected = true;
+    }
+
+    @Override
+    public void applyProfile(ReaderProfile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    private void run() {
+        long tickMicros = (long) (TICK_MILLIS * 1_000 * speed);
+        long next = System.nanoTime();
+        while (running) {
+            tick(simMicros, simMicros + tickMicros);
+            simMicros += tickMicros;
+            next += TICK_MILLIS * 1_000_000;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void tick(long from, long to) {
+        long half = dwellMicros / 2;
+        while (nextPass < passMicros.length && passMicros[nextPass] - half < to) {
+            active.add(nextPass++);
+        }
+        boolean outage = reconnectEveryMicros > 0 && from % reconnectEveryMicros >= reconnectEveryMicros - outageMicros;
+        if (outage != inOutage) {
+            inOutage = outage;
+            if (outage && !linkDown) {
+                util.addLog("⚠ " + address + " connection lost (simulated)");
+                linkDown = true;
+                connected = false;
+                listener.onConnectionLost();
+            }
+        }
+        if (resumeRequested) {
+            resumeRequested = false;
+            linkDown = false;
+            util.addLog("🔁 " + address + " resumed, delivering " + held.size() + " held reads");
+            for (long[] read : held) deliver((int) read[0], (int) read[1], read[2], read[3]);
+            held.clear();
+            listener.onResumed(epochMicros + from);
+        }
+        double rate = readRate;
+        if (burstEveryMicros > 0 && from % burstEveryMicros < burstMicros) {
+            rate *= burstFactor;
+        }
+
+        for (int i = active.size() - 1; i >= 0; i--) {
+            int pass = active.get(i);
+            long start = Math.max(from, passMicros[pass] - half);
+            long end = Math.min(to, passMicros[pass] + half);
+            if (end > start) {
+                double expected = rate * (end - start) / 1_000_000.0;
+                int count = (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+                for (int k = 0; k < count; k++) {
+                    long time = start + (long) (random.nextDouble() * (end - start));
+                    double off = (time - passMicros[pass]) / (double) Math.max(1, half);
+                    long rssiCenti = Math.round((-45 - 25 * off * off + random.nextGaussian()) * 100);
+                    int antenna = 1 + random.nextInt(4);
+                    if (linkDown) held.add(new long[]{passRunner[pass], antenna, time, rssiCenti});
+                    else deliver(passRunner[pass], antenna, time, rssiCenti);
+                }
+            }
+            if (passMicros[pass] + half <= to) {
+                active.remove(i);
+            }
+        }
+        if (!finished && nextPass == passMicros.length && active.isEmpty() && held.isEmpty()) {
+            util.addLog(String.format("🏁 %s scenario finished after %,d reads", address, reads));
+            finished = true;
+        }
+    }
+
+    private void deliver(int runner, int antenna, long time, long rssiCenti) {
+        ReaderProfile profile = this.profile;
+        if (!profile.isEnabledPort(antenna) || !profile.matchesEpc(epcs[runner])) return;
+        long micros = epochMicros + time;
+        listener.onRead(epcs[runner], antenna, micros, micros, rssiCenti / 100.0);
+        reads++;
+    }
+
+    private int intParam(String name, int defaultValue) {
+        try {
+            return params.containsKey(name) ? Integer.parseInt(params.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            util.addLog("⚠ Invalid sim parameter " + name + "=" + params.get(name));
+            return defaultValue;
+        }
+    }
+
+    private double doubleParam(String name, double defaultValue) {
+        try {
+            return params.containsKey(name) ? Double.parseDouble(params.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            util.addLog("⚠ Invalid sim parameter " + name + "=" + params.get(name));
+            return defaultValue;
+        }
+    }
+}
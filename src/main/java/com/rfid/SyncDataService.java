@@ -2,20 +2,12 @@ package com.rfid;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.impinj.octane.Tag;
 import okhttp3.*;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.*;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,205 +16,179 @@ public class SyncDataService implements SyncHandler {
     private MarathonPanel marathonPanel;
     private TagStorage storage;
     private Util util;
-    private final OkHttpClient client = new OkHttpClient();
+    private SyncTransport transport = new SyncTransport();
+    private boolean gzipSync = false;
+    private ChunkedSync chunkedSync;
+    private BackgroundSync backgroundSync;
     private final GenerateReport report = new GenerateReport();
+    private TagStateCache tagStateCache;
+    private Metrics metrics;
 
     public SyncDataService(MarathonPanel marathonPanel, TagStorage storage,Util util){
         this.marathonPanel = marathonPanel;
         this.storage = storage;
         this.util = util;
+        this.chunkedSync = new ChunkedSync(storage);
+        this.backgroundSync = new BackgroundSync(storage, transport);
     }
 
-    @Override
-    public void normalSyncFromDatabase(Map<Integer,List<String>> lapInMap) {
-        marathonPanel.getSyncStatusLabel().setText("Syncing data from database...");
-        marathonPanel.getSyncStatusLabel().setForeground(new Color(59, 130, 246));
+    public void setTransport(SyncTransport transport) {
+        this.transport = transport;
+    }
 
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                try {
-                    String marathonName = marathonPanel.getMarathonNameField().getText().trim();
-                    Map<Integer, List<TagDetail>> lapTags = buildLapTagMap(lapInMap);
+    public void setBackgroundSync(BackgroundSync backgroundSync) {
+        this.backgroundSync.stop();
+        this.backgroundSync = backgroundSync;
+    }
 
-                    if (lapTags.isEmpty()) {
-                        SwingUtilities.invokeLater(() -> {
-                            marathonPanel.getSyncStatusLabel().setText("No tags found to be synced");
-                            marathonPanel.getSyncStatusLabel().setForeground(Color.ORANGE);
-                            util.addLog("No tags found in local storage, skipping sync.");
-                        });
-                        return null;
-                    }
-                    String jsonBody = buildSyncRequestJson(marathonName, lapTags);
-                    // 3. Send POST request
-                    HttpClient client = HttpClient.newHttpClient();
-                    HttpRequest request = HttpRequest.newBuilder()
-                            .uri(URI.create("http://localhost:8083/api/rfid/sync"))
-                            .header("Content-Type", "application/json")
-                            .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                            .build();
+    public void setGzipSync(boolean gzipSync) {
+        this.gzipSync = gzipSync;
+    }
 
-                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    public void setChunkedSync(ChunkedSync chunkedSync) {
+        this.chunkedSync = chunkedSync;
+        chunkedSync.setTagStateCache(tagStateCache);
+    }
 
-                    if (response.statusCode() == 200) {
-                        try {
-                            List<String> allSyncedIps = lapInMap.values().stream()
-                                    .flatMap(List::stream)
-                                    .distinct()
-                                    .collect(Collectors.toList());
-                            storage.deleteByReaderIps(allSyncedIps);
-                        } catch (Exception ex) {
-                            util.addLog("Failed to clear local tags: " + ex.getMessage());
-                            ex.printStackTrace();
-                        }
-                        SwingUtilities.invokeLater(() -> {
-                            marathonPanel.getMarathonNameField().setText("");
-                            marathonPanel.getSyncStatusLabel().setText("Database sync completed successfully!");
-                            marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
-                            util.addLog("Database sync successful: " + response.body());
-                        });
-                    } else {
-                        SwingUtilities.invokeLater(() -> {
-                            try {
-                                // parse error JSON cleanly
-                                ObjectMapper mapper = new ObjectMapper();
-                                JsonNode node = mapper.readTree(response.body());
-                                String errorMessage = node.has("errorDescription")
-                                        ? node.get("errorDescription").asText()
-                                        : "Sync failed";
-
-                                marathonPanel.getSyncStatusLabel().setText(errorMessage);
-                                marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
-                                util.addLog("Sync failed: " + errorMessage);
-                            } catch (Exception parseEx) {
-                                // fallback if response is not JSON
-                                marathonPanel.getSyncStatusLabel().setText("Sync failed");
-                                marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
-                                util.addLog("Sync failed (unparseable body): " + response.body());
-                            }
-                        });
-                    }
-                } catch (Exception ex) {
-                    SwingUtilities.invokeLater(() -> {
-                        marathonPanel.getSyncStatusLabel().setText("Something went wrong during sync!");
-                        marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
-                        util.addLog("Unexpected error during sync: " + ex.getMessage());
-                    });
-                }
-                return null;
-            }
-        };
-        worker.execute();
+    public void setTagStateCache(TagStateCache tagStateCache) {
+        this.tagStateCache = tagStateCache;
+        chunkedSync.setTagStateCache(tagStateCache);
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void normalSyncFromDatabase(Map<Integer,List<String>> lapInMap) {
+        marathonPanel.getSyncStatusLabel().setText("Syncing data from database...");
+        marathonPanel.getSyncStatusLabel().setForeground(new Color(59, 130, 246));
+        runChunkedSync(lapInMap, false);
     }
 
     @Override
     public void mergeSyncFromDatabase(Map<Integer, List<String>> lapIpMap) {
         marathonPanel.getSyncStatusLabel().setText("🔄 Merging and syncing data...");
         marathonPanel.getSyncStatusLabel().setForeground(new Color(59, 130, 246));
+        runChunkedSync(lapIpMap, true);
+    }
 
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                try {
-                    String marathonName = marathonPanel.getMarathonNameField().getText().trim();
-                    Map<Integer, List<TagDetail>> mergedLapTagMap = new HashMap<>();
-
-                    for (Map.Entry<Integer, List<String>> entry : lapIpMap.entrySet()) {
-                        int lapNumber = entry.getKey();
-                        List<String> ips = entry.getValue();
-
-                        List<TagDetail> allTags = new ArrayList<>();
-                        for (String ip : ips) {
-                            List<TagDetail> tags = storage.findTagDetailsByIp(ip);
-                            if (tags != null) allTags.addAll(tags);
-                        }
-
-                        Map<String, TagDetail> uniqueTags = allTags.stream()
-                                .collect(Collectors.toMap(
-                                        TagDetail::getTagId,
-                                        t -> t,
-                                        (t1, t2) -> t1.getLastSeen().isAfter(t2.getLastSeen()) ? t1 : t2
-                                ));
+    private void runChunkedSync(Map<Integer, List<String>> lapIpMap, boolean merge) {
+        String marathonName = marathonPanel.getMarathonNameField().getText().trim();
+        String label = merge ? "Merge sync" : "Database sync";
 
-                        mergedLapTagMap.put(lapNumber, new ArrayList<>(uniqueTags.values()));
-                    }
+        SwingWorker<ChunkedSync.Result, Void> worker = new SwingWorker<>() {
+            @Override
+            protected ChunkedSync.Result doInBackground() throws Exception {
+                return chunkedSync.run(marathonName, lapIpMap, merge, gzipSync, SyncDataService.this::sendSyncChunk,
+                        (acked, total, tags, tagsPerSecond) -> SwingUtilities.invokeLater(() -> {
+                            marathonPanel.getSyncStatusLabel().setText(String.format(
+                                    "Syncing: %d/%d chunks (%d%%), %,.0f tags/s",
+                                    acked, total, acked * 100 / total, tagsPerSecond));
+                            marathonPanel.getSyncStatusLabel().setForeground(new Color(59, 130, 246));
+                        }));
+            }
 
-                    if (mergedLapTagMap.isEmpty()) {
-                        SwingUtilities.invokeLater(() -> {
-                            marathonPanel.getSyncStatusLabel().setText("No tags found to merge or sync");
-                            marathonPanel.getSyncStatusLabel().setForeground(Color.ORANGE);
-                            util.addLog("No tags found to merge, skipping sync.");
-                        });
-                        return null;
+            @Override
+            protected void done() {
+                try {
+                    ChunkedSync.Result result = get();
+                    recordSync(merge ? "merge" : "normal", result);
+                    if (result.totalChunks() == 0) {
+                        marathonPanel.getSyncStatusLabel().setText("No tags found to be synced");
+                        marathonPanel.getSyncStatusLabel().setForeground(Color.ORANGE);
+                        util.addLog("No tags found in local storage, skipping sync.");
+                        return;
                     }
-
-                    String jsonBody = buildSyncRequestJson(marathonName, mergedLapTagMap);
-
-                    // 4️⃣ Send to server
-                    HttpClient client = HttpClient.newHttpClient();
-                    HttpRequest request = HttpRequest.newBuilder()
-                            .uri(URI.create("http://localhost:8083/api/rfid/sync"))
-                            .header("Content-Type", "application/json")
-                            .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                            .build();
-
-                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-                    // 5️⃣ On success → delete merged IP records
-                    if (response.statusCode() == 200) {
-                        try {
-                            List<String> allSyncedIps = lapIpMap.values().stream()
-                                    .flatMap(List::stream)
-                                    .distinct()
-                                    .collect(Collectors.toList());
-                            storage.deleteByReaderIps(allSyncedIps);
-                        } catch (Exception ex) {
-                            util.addLog("Failed to clear merged IP tags: " + ex.getMessage());
+                    if (result.isComplete()) {
+                        if (!merge) {
+                            marathonPanel.getMarathonNameField().setText("");
                         }
-
-                        SwingUtilities.invokeLater(() -> {
-                            marathonPanel.getSyncStatusLabel().setText("Merge sync completed successfully!");
-                            marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
-                            util.addLog("Merge sync successful: " + response.body());
-                        });
+                        marathonPanel.getSyncStatusLabel().setText(label + " completed successfully!");
+                        marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
+                        util.addLog(String.format("%s successful%s: %,d tags in %d chunks, %.1fs (%,.0f tags/s)",
+                                label, result.resumed() ? " (resumed)" : "", result.tagsSent(), result.totalChunks(),
+                                result.elapsedMillis() / 1000.0, result.tagsPerSecond()));
+                        logTransportStats();
                     } else {
-                        SwingUtilities.invokeLater(() -> {
-                            marathonPanel.getSyncStatusLabel().setText("Merge sync failed!");
-                            marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
-                            util.addLog("Merge sync failed: " + response.body());
-                        });
+                        marathonPanel.getSyncStatusLabel().setText(String.format(
+                                "%s incomplete: %d/%d chunks, sync again to resume",
+                                label, result.ackedChunks(), result.totalChunks()));
+                        marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
+                        util.addLog(label + " failed: " + result.firstError());
                     }
-
                 } catch (Exception ex) {
-                    SwingUtilities.invokeLater(() -> {
-                        marathonPanel.getSyncStatusLabel().setText("Something went wrong during merge sync!");
-                        marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
-                        util.addLog("Error in merge sync: " + ex.getMessage());
-                    });
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    marathonPanel.getSyncStatusLabel().setText("Something went wrong during sync!");
+                    marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
+                    util.addLog("Unexpected error during sync: " + cause.getMessage());
                 }
-                return null;
             }
         };
         worker.execute();
     }
 
-    private Map<Integer, List<TagDetail>> buildLapTagMap(Map<Integer, List<String>> lapIpMap) {
-        Map<Integer, List<TagDetail>> lapTagMap = new HashMap<>();
+    @Override
+    public void startLiveSync(Map<Integer, List<String>> lapIpMap) {
+        String marathonName = marathonPanel.getMarathonNameField().getText().trim();
+        backgroundSync.start(marathonName, lapIpMap, (sent, total, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                marathonPanel.getSyncStatusLabel().setText("Live sync retrying: " + error);
+                marathonPanel.getSyncStatusLabel().setForeground(Color.RED);
+                util.log(LogCategory.SYNC, "Live sync failed: " + error);
+            } else {
+                marathonPanel.getSyncStatusLabel().setText(String.format("Live sync: %,d tags sent", total));
+                marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
+                util.log(LogCategory.SYNC, "🔁 Live sync pushed %d changed tags", sent);
+            }
+        }));
+        marathonPanel.getSyncStatusLabel().setText("Live sync started");
+        marathonPanel.getSyncStatusLabel().setForeground(new Color(59, 130, 246));
+        util.addLog("🔁 Live sync started for " + lapIpMap.size() + " laps");
+    }
 
-        for (Map.Entry<Integer, List<String>> entry : lapIpMap.entrySet()) {
-            int lapNumber = entry.getKey();
-            List<String> ips = entry.getValue();
+    @Override
+    public void stopLiveSync() {
+        if (!backgroundSync.isRunning()) {
+            return;
+        }
+        backgroundSync.stop();
+        marathonPanel.getSyncStatusLabel().setText("Live sync stopped");
+        marathonPanel.getSyncStatusLabel().setForeground(new Color(107, 114, 128));
+        util.addLog("Live sync stopped.");
+    }
 
-            List<TagDetail> tagsForLap = ips.stream()
-                    .flatMap(ip -> storage.findTagDetailsByIp(ip).stream()) // ✅ flatten List<TagDetail>
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+    private void recordSync(String mode, ChunkedSync.Result result) {
+        if (metrics == null || result.totalChunks() == 0) {
+            return;
+        }
+        if (result.isComplete()) {
+            metrics.timer("rfid_sync_duration_seconds", "Duration of completed database syncs", "mode", mode)
+                    .record(result.elapsedMillis() * 1_000_000);
+            metrics.counter("rfid_sync_tags_total", "Tags sent by completed database syncs", "mode", mode)
+                    .add(result.tagsSent());
+        } else {
+            metrics.counter("rfid_sync_failures_total", "Database syncs that did not complete", "mode", mode).inc();
+        }
+    }
 
-            if (!tagsForLap.isEmpty()) {
-                lapTagMap.put(lapNumber, tagsForLap);
-            }
+    private void sendSyncChunk(SyncRequestBody body, String idempotencyKey) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Idempotency-Key", idempotencyKey);
+        if (body.isGzip()) {
+            headers.put("Content-Encoding", "gzip");
+        }
+        SyncTransport.Reply reply = transport.post("/api/rfid/sync", body, headers, true);
+        if (!reply.isSuccessful()) {
+            throw new IOException(parseErrorMessage(reply.body(), "Sync failed (HTTP " + reply.code() + ")"));
         }
-        return lapTagMap;
+    }
+
+    private void logTransportStats() {
+        SyncTransport.Stats stats = transport.getStats();
+        util.log(LogCategory.SYNC, "📶 Sync transport: %d calls, %d retries, %d failed, %,d B sent, %,d B received, avg %.0f ms, max %.0f ms",
+                stats.calls(), stats.retries(), stats.failures(), stats.bytesSent(), stats.bytesReceived(),
+                stats.avgLatencyMillis(), stats.maxLatencyMillis());
     }
 
     @Override
@@ -243,7 +209,7 @@ public class SyncDataService implements SyncHandler {
                                     requests.add(new CsvRequest(lap, reader))
                             )
                     );
-                    ObjectMapper mapper = new ObjectMapper();
+                    ObjectMapper mapper = transport.getMapper();
                     String requestsJson = mapper.writeValueAsString(requests);
 
                     RequestBody fileBody = RequestBody.create(csvFile, MediaType.parse("text/csv"));
@@ -256,51 +222,40 @@ public class SyncDataService implements SyncHandler {
                             .addFormDataPart("merge", String.valueOf(merge))
                             .build();
 
-                    String uploadUrl = "http://localhost:8083/api/rfid/file-upload";
-
-                    Request uploadRequest = new Request.Builder()
-                            .url(uploadUrl)
-                            .post(requestBody)
-                            .build();
-
                     // ✅ 2. Call /file-upload
-                    try (Response uploadResponse = client.newCall(uploadRequest).execute()) {
-                        if (!uploadResponse.isSuccessful() || uploadResponse.body() == null) {
-                            String body = uploadResponse.body() != null ? uploadResponse.body().string() : "";
-                            String errMsg = parseErrorMessage(body, "Upload failed");
-                            updateErrorUI(errMsg);
-                            return null;
-                        }
+                    // Uploads are not idempotent, so the transport never retries this call
+                    SyncTransport.Reply uploadReply = transport.post("/api/rfid/file-upload", requestBody,
+                            Map.of(), false);
+                    if (!uploadReply.isSuccessful()) {
+                        String errMsg = parseErrorMessage(uploadReply.body(), "Upload failed");
+                        updateErrorUI(errMsg);
+                        return null;
+                    }
 
-                        String parsedRequestBody = uploadResponse.body().string();
-                        util.addLog("Upload success, got parsed body: " + parsedRequestBody);
-
-                        // ✅ 3. Now send parsedRequestBody to /sync
-                        Request syncRequest = new Request.Builder()
-                                .url("http://localhost:8083/api/rfid/sync")
-                                .header("Content-Type", "application/json")
-                                .post(RequestBody.create(parsedRequestBody, MediaType.parse("application/json")))
-                                .build();
-
-                        try (Response syncResponse = client.newCall(syncRequest).execute()) {
-                            if (syncResponse.isSuccessful()) {
-                                String syncBody = syncResponse.body() != null ? syncResponse.body().string() : "";
-                                List<String> allSyncedIps = lapInMap.values().stream()
-                                        .flatMap(List::stream)
-                                        .distinct()
-                                        .collect(Collectors.toList());
-                                storage.deleteByReaderIps(allSyncedIps);
-                                SwingUtilities.invokeLater(() -> {
-                                    marathonPanel.getSyncStatusLabel().setText("✅ CSV uploaded & synced!");
-                                    marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
-                                    util.addLog("Sync success: " + syncBody);
-                                });
-                            } else {
-                                String syncBody = syncResponse.body() != null ? syncResponse.body().string() : "";
-                                String errorMessage = parseErrorMessage(syncBody, "Sync failed");
-                                updateErrorUI(errorMessage);
-                            }
-                        }
+                    String parsedRequestBody = uploadReply.body();
+                    util.addLog("Upload success, got parsed body: " + parsedRequestBody);
+
+                    // ✅ 3. Now send parsedRequestBody to /sync
+                    // A fresh idempotency key makes the sync safe to retry
+                    SyncTransport.Reply syncReply = transport.post("/api/rfid/sync",
+                            RequestBody.create(parsedRequestBody, MediaType.parse("application/json")),
+                            Map.of("Idempotency-Key", UUID.randomUUID().toString()), true);
+                    if (syncReply.isSuccessful()) {
+                        String syncBody = syncReply.body();
+                        List<String> allSyncedIps = lapInMap.values().stream()
+                                .flatMap(List::stream)
+                                .distinct()
+                                .collect(Collectors.toList());
+                        clearSyncedReaders(allSyncedIps);
+                        SwingUtilities.invokeLater(() -> {
+                            marathonPanel.getSyncStatusLabel().setText("✅ CSV uploaded & synced!");
+                            marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
+                            util.addLog("Sync success: " + syncBody);
+                            logTransportStats();
+                        });
+                    } else {
+                        String errorMessage = parseErrorMessage(syncReply.body(), "Sync failed");
+                        updateErrorUI(errorMessage);
                     }
                 } catch (Exception ex) {
                     // 🟢 Only handle truly unexpected errors here
@@ -332,9 +287,7 @@ public class SyncDataService implements SyncHandler {
                                     requests.add(new CsvRequest(lap, reader))
                             )
                     );
-                    ObjectMapper mapper = new ObjectMapper();
-                    mapper.registerModule(new JavaTimeModule());
-                    mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+                    ObjectMapper mapper = transport.getMapper();
 
                     String requestsJson = mapper.writeValueAsString(requests);
 
@@ -348,54 +301,43 @@ public class SyncDataService implements SyncHandler {
                             .addFormDataPart("merge", String.valueOf(merge))
                             .build();
 
-                    String uploadUrl = "http://localhost:8083/api/rfid/file-upload";
+                    // Call /file-upload
+                    // Uploads are not idempotent, so the transport never retries this call
+                    SyncTransport.Reply uploadReply = transport.post("/api/rfid/file-upload", requestBody,
+                            Map.of(), false);
+                    if (!uploadReply.isSuccessful()) {
+                        String errMsg = parseErrorMessage(uploadReply.body(), "Upload failed");
+                        updateErrorUI(errMsg);
+                        return null;
+                    }
+
+                    String parsedRequestBody = uploadReply.body();
+                    util.addLog("Upload success, got parsed body: " + parsedRequestBody);
 
-                    Request uploadRequest = new Request.Builder()
-                            .url(uploadUrl)
-                            .post(requestBody)
-                            .build();
+                    SyncDataRequest fullRequest = mapper.readValue(parsedRequestBody, SyncDataRequest.class);
 
-                    // Call /file-upload
-                    try (Response uploadResponse = client.newCall(uploadRequest).execute()) {
-                        if (!uploadResponse.isSuccessful() || uploadResponse.body() == null) {
-                            String body = uploadResponse.body() != null ? uploadResponse.body().string() : "";
-                            String errMsg = parseErrorMessage(body, "Upload failed");
-                            updateErrorUI(errMsg);
-                            return null;
-                        }
+                    // Call /sync
+                    // A fresh idempotency key makes the sync safe to retry
+                    SyncTransport.Reply syncReply = transport.post("/api/rfid/sync",
+                            RequestBody.create(parsedRequestBody, MediaType.parse("application/json")),
+                            Map.of("Idempotency-Key", UUID.randomUUID().toString()), true);
+                    if (syncReply.isSuccessful()) {
+                        String syncBody = syncReply.body();
+                        List<String> allSyncedIps = lapInMap.values().stream()
+                                .flatMap(List::stream)
+                                .distinct()
+                                .collect(Collectors.toList());
+                        clearSyncedReaders(allSyncedIps);
 
-                        String parsedRequestBody = uploadResponse.body().string();
-                        util.addLog("Upload success, got parsed body: " + parsedRequestBody);
-
-                        SyncDataRequest fullRequest = mapper.readValue(parsedRequestBody, SyncDataRequest.class);
-
-                        // Call /sync
-                        Request syncRequest = new Request.Builder()
-                                .url("http://localhost:8083/api/rfid/sync")
-                                .header("Content-Type", "application/json")
-                                .post(RequestBody.create(parsedRequestBody, MediaType.parse("application/json")))
-                                .build();
-
-                        try (Response syncResponse = client.newCall(syncRequest).execute()) {
-                            if (syncResponse.isSuccessful()) {
-                                String syncBody = syncResponse.body() != null ? syncResponse.body().string() : "";
-                                List<String> allSyncedIps = lapInMap.values().stream()
-                                        .flatMap(List::stream)
-                                        .distinct()
-                                        .collect(Collectors.toList());
-                                storage.deleteByReaderIps(allSyncedIps);
-
-                                SwingUtilities.invokeLater(() -> {
-                                    marathonPanel.getSyncStatusLabel().setText("✅ CSV uploaded & synced!");
-                                    marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
-                                    util.addLog("Sync success: " + syncBody);
-                                });
-                            } else {
-                                String syncBody = syncResponse.body() != null ? syncResponse.body().string() : "";
-                                String errorMessage = parseErrorMessage(syncBody, "Sync failed");
-                                updateErrorUI(errorMessage);
-                            }
-                        }
+                        SwingUtilities.invokeLater(() -> {
+                            marathonPanel.getSyncStatusLabel().setText("✅ CSV uploaded & synced!");
+                            marathonPanel.getSyncStatusLabel().setForeground(new Color(34, 197, 94));
+                            util.addLog("Sync success: " + syncBody);
+                            logTransportStats();
+                        });
+                    } else {
+                        String errorMessage = parseErrorMessage(syncReply.body(), "Sync failed");
+                        updateErrorUI(errorMessage);
                     }
                 } catch (Exception ex) {
                     updateErrorUI("Unexpected error: " + ex.getMessage());
@@ -409,52 +351,215 @@ public class SyncDataService implements SyncHandler {
 
     @Override
     public void downloadReport() {
-        try {
-            // 1. Fetch all tag details
-            List<TagDetail> tags = storage.findAll();
-            if (tags.isEmpty()) {
-                SwingUtilities.invokeLater(() -> {
-                    marathonPanel.getSyncStatusLabel().setText("No tags found to be synced");
-                    marathonPanel.getSyncStatusLabel().setForeground(Color.ORANGE);
-                    util.addLog("No tags found in database.");
-                });
-                return;
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save RFID Report");
+        fileChooser.setSelectedFile(new File("rfid-report.csv"));
+
+        if (fileChooser.showSaveDialog(null) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File fileToSave = fileChooser.getSelectedFile();
+
+        ProgressMonitor monitor = new ProgressMonitor(null, "Exporting RFID report", "Counting tags...", 0, 100);
+        monitor.setMillisToDecideToPopup(300);
+
+        // Streams rows from a server-side cursor straight into the file, off the EDT
+        SwingWorker<Long, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                long total = storage.countAll();
+                if (total == 0) {
+                    return 0L;
+                }
+                try (CsvReportWriter writer = new CsvReportWriter(fileToSave.toPath())) {
+                    IOException[] failure = new IOException[1];
+                    storage.forEachTag(tag -> {
+                        try {
+                            writer.writeRow(tag);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                            return false;
+                        }
+                        long written = writer.getRowsWritten();
+                        if (written % 10_000 == 0) {
+                            setProgress((int) Math.min(99, written * 100 / total));
+                        }
+                        return !isCancelled();
+                    });
+                    if (failure[0] != null) {
+                        throw failure[0];
+                    }
+                    return writer.getRowsWritten();
+                }
             }
 
-            // 2. Open file chooser dialog for CSV
-            JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setDialogTitle("Save RFID Report");
-            fileChooser.setSelectedFile(new File("rfid-report.csv"));
-
-            int userSelection = fileChooser.showSaveDialog(null);
-
-            if (userSelection == JFileChooser.APPROVE_OPTION) {
-                File fileToSave = fileChooser.getSelectedFile();
-
-                try (PrintWriter writer = new PrintWriter(new FileWriter(fileToSave))) {
-                    writer.println("tagId,antenna,firstSeen,lastSeen,reader");
-                    // Data rows
-                    for (TagDetail tag : tags) {
-                        writer.printf("%s,%d,%s,%s,%s%n",
-                                tag.getTagId(),
-                                tag.getAntenna(),
-                                tag.getFirstSeen() != null ? tag.getFirstSeen().toString() : "",
-                                tag.getLastSeen() != null ? tag.getLastSeen().toString() : "",
-                                tag.getReader());
+            @Override
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) {
+                    fileToSave.delete();
+                    util.addLog("Report export cancelled.");
+                    return;
+                }
+                try {
+                    long rows = get();
+                    if (rows == 0) {
+                        fileToSave.delete();
+                        marathonPanel.getSyncStatusLabel().setText("No tags found to be synced");
+                        marathonPanel.getSyncStatusLabel().setForeground(Color.ORANGE);
+                        util.addLog("No tags found in database.");
+                        return;
                     }
+                    JOptionPane.showMessageDialog(null,
+                            "Report saved to:\n" + fileToSave.getAbsolutePath(),
+                            "Download Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(null,
+                            "Error while downloading report: " + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
                 }
-                JOptionPane.showMessageDialog(null,
-                        "Report saved to:\n" + fileToSave.getAbsolutePath(),
-                        "Download Complete",
-                        JOptionPane.INFORMATION_MESSAGE);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null,
-                    "Error while downloading report: " + e.getMessage(),
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                int progress = (Integer) evt.getNewValue();
+                monitor.setProgress(progress);
+                monitor.setNote(progress + "% written");
+            }
+            if (monitor.isCanceled() && !worker.isDone()) {
+                worker.cancel(false);
+            }
+        });
+        worker.execute();
+    }
+
+    @Override
+    public void downloadExcelReport() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save RFID Excel Report");
+        fileChooser.setSelectedFile(new File("rfid-report.xlsx"));
+
+        if (fileChooser.showSaveDialog(null) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File fileToSave = fileChooser.getSelectedFile();
+        Map<Integer, List<String>> lapIpMap = marathonPanel != null
+                ? marathonPanel.getSelectedLapIpMap() : Collections.emptyMap();
+
+        ProgressMonitor monitor = new ProgressMonitor(null, "Exporting RFID Excel report", "Counting tags...", 0, 100);
+        monitor.setMillisToDecideToPopup(300);
+
+        // Rows stream from the database cursor through a bounded SXSSF window into the file
+        SwingWorker<Long, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                long total = storage.countAll();
+                if (total == 0) {
+                    return 0L;
+                }
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fileToSave), 1 << 16)) {
+                    return report.generateStreamingReport(storage, lapIpMap, out,
+                            written -> {
+                                if (written % 10_000 == 0) {
+                                    setProgress((int) Math.min(99, written * 100 / total));
+                                }
+                            },
+                            this::isCancelled);
+                }
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) {
+                    fileToSave.delete();
+                    util.addLog("Excel report export cancelled.");
+                    return;
+                }
+                try {
+                    long rows = get();
+                    if (rows == 0) {
+                        fileToSave.delete();
+                        marathonPanel.getSyncStatusLabel().setText("No tags found to be synced");
+                        marathonPanel.getSyncStatusLabel().setForeground(Color.ORANGE);
+                        util.addLog("No tags found in database.");
+                        return;
+                    }
+                    util.addLog(String.format("✅ Excel report with %,d tags saved to %s", rows, fileToSave.getName()));
+                    JOptionPane.showMessageDialog(null,
+                            "Report saved to:\n" + fileToSave.getAbsolutePath(),
+                            "Download Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    cause.printStackTrace();
+                    fileToSave.delete();
+                    JOptionPane.showMessageDialog(null,
+                            "Error while generating Excel report: " + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                int progress = (Integer) evt.getNewValue();
+                monitor.setProgress(progress);
+                monitor.setNote(progress + "% written");
+            }
+            if (monitor.isCanceled() && !worker.isDone()) {
+                worker.cancel(false);
+            }
+        });
+        worker.execute();
+    }
+
+    @Override
+    public void importReport() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import RFID Report");
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV File", "csv"));
+        if (fileChooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        File csvFile = fileChooser.getSelectedFile();
+        util.addLog("📥 Importing " + csvFile.getName() + "...");
+
+        SwingWorker<TagCsvImporter.Result, Void> worker = new SwingWorker<>() {
+            @Override
+            protected TagCsvImporter.Result doInBackground() throws Exception {
+                return new TagCsvImporter(storage).importCsv(csvFile.toPath(),
+                        (rows, bytes, totalBytes, rowsPerSecond) -> util.addLog(String.format(
+                                "📥 %,d rows copied (%d%%, %,.0f rows/s)",
+                                rows, totalBytes == 0 ? 100 : bytes * 100 / totalBytes, rowsPerSecond)));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    TagCsvImporter.Result result = get();
+                    util.addLog(String.format("✅ Imported %,d rows into %,d tags in %.1fs (%,.0f rows/s)",
+                            result.rowsCopied(), result.rowsMerged(),
+                            result.elapsedMillis() / 1000.0, result.rowsPerSecond()));
+                    JOptionPane.showMessageDialog(null,
+                            String.format("Imported %,d rows from:%n%s", result.rowsCopied(), csvFile.getAbsolutePath()),
+                            "Import Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    util.addLog("❌ Import failed: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(null,
+                            "Error while importing report: " + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
     }
 
     @Override
@@ -463,6 +568,13 @@ public class SyncDataService implements SyncHandler {
         return tags;
     }
 
+    private void clearSyncedReaders(List<String> readerIps) {
+        storage.deleteByReaderIps(readerIps);
+        if (tagStateCache != null) {
+            tagStateCache.invalidateReaders(readerIps);
+        }
+    }
+
     private void updateErrorUI(String message) {
         SwingUtilities.invokeLater(() -> {
             marathonPanel.getSyncStatusLabel().setText(message);
@@ -476,8 +588,7 @@ public class SyncDataService implements SyncHandler {
             return defaultMsg;
         }
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(responseBody);
+            JsonNode node = transport.getMapper().readTree(responseBody);
             if (node.has("errorDescription")) {
                 return node.get("errorDescription").asText();
             }
@@ -487,36 +598,4 @@ public class SyncDataService implements SyncHandler {
         }
     }
 
-    private String buildSyncRequestJson(String marathonName, Map<Integer, List<TagDetail>> lapToTagsMap) throws Exception {
-        ObjectMapper mapper = new ObjectMapper();
-
-        ObjectNode root = mapper.createObjectNode();
-        root.put("marathon", marathonName);
-
-        ArrayNode lapsArray = mapper.createArrayNode();
-
-        for (Map.Entry<Integer, List<TagDetail>> entry : lapToTagsMap.entrySet()) {
-            int lapNumber = entry.getKey();
-            List<TagDetail> tags = entry.getValue();
-
-            ObjectNode lapNode = mapper.createObjectNode();
-            lapNode.put("lapNumber", lapNumber);
-
-            ArrayNode tagsArray = mapper.createArrayNode();
-            for (TagDetail tag : tags) {
-                ObjectNode tagNode = mapper.createObjectNode();
-                tagNode.put("tagId", tag.getTagId());
-                tagNode.put("antenna", tag.getAntenna());
-                tagNode.put("firstSeen", tag.getFirstSeen().toString());
-                tagNode.put("lastSeen", tag.getLastSeen().toString());
-                tagsArray.add(tagNode);
-            }
-
-            lapNode.set("tags", tagsArray);
-            lapsArray.add(lapNode);
-        }
-        root.set("laps", lapsArray);
-        return mapper.writeValueAsString(root);
-    }
-
 }
\ No newline at end of file
@@ -8,7 +8,11 @@ public interface SyncHandler {
     void normalSyncFromDatabase(Map<Integer,List<String>> lapInMap);
     void uploadCsv(File csvFile,Map<Integer,List<String>> lapInMap,boolean merge);
     void downloadReport();
+    void downloadExcelReport();
+    void importReport();
     List<TagDetail> fetchUnsyncedIpTags();
     void mergeSyncFromDatabase(Map<Integer, List<String>> lapIpMap);
+    void startLiveSync(Map<Integer, List<String>> lapIpMap);
+    void stopLiveSync();
     void mergeUploadCsv(File selectedFile, Map<Integer, List<String>> tagIpMap,boolean merge);
 }
\ No newline at end of file
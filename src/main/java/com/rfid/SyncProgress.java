@@ -0,0 +1,199 @@
+package com.rfid;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The chunk plan of a database sync and which chunks the server acknowledged. It
+ * is kept in a small JSON file so an interrupted sync resumes with the same
+ * chunks and idempotency keys instead of starting over.
+ */
+public class SyncProgress {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String syncId;
+    private String marathon;
+    private boolean merge;
+    private Map<Integer, List<String>> lapIpMap = new TreeMap<>();
+    private List<Chunk> chunks = new ArrayList<>();
+
+    public SyncProgress() {
+    }
+
+    public SyncProgress(String syncId, String marathon, boolean merge, Map<Integer, List<String>> lapIpMap) {
+        this.syncId = syncId;
+        this.marathon = marathon;
+        this.merge = merge;
+        this.lapIpMap = new TreeMap<>(lapIpMap);
+    }
+
+    public static SyncProgress load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return MAPPER.readValue(file.toFile(), SyncProgress.class);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable sync progress " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        MAPPER.writeValue(tmp.toFile(), this);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public boolean matches(String marathon, boolean merge, Map<Integer, List<String>> lapIpMap) {
+        return this.merge == merge
+                && this.marathon != null && this.marathon.equals(marathon)
+                && this.lapIpMap.equals(new TreeMap<>(lapIpMap));
+    }
+
+    public synchronized int ackedCount() {
+        int acked = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.isAcked()) acked++;
+        }
+        return acked;
+    }
+
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public void setSyncId(String syncId) {
+        this.syncId = syncId;
+    }
+
+    public String getMarathon() {
+        return marathon;
+    }
+
+    public void setMarathon(String marathon) {
+        this.marathon = marathon;
+    }
+
+    public boolean isMerge() {
+        return merge;
+    }
+
+    public void setMerge(boolean merge) {
+        this.merge = merge;
+    }
+
+    public Map<Integer, List<String>> getLapIpMap() {
+        return lapIpMap;
+    }
+
+    public void setLapIpMap(Map<Integer, List<String>> lapIpMap) {
+        this.lapIpMap = new TreeMap<>(lapIpMap);
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(List<Chunk> chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Tags of one lap with tag_id in (afterTagId, toTagId]; a null bound is open. Once
+     * sent, it also holds the id and change_seq of the rows it sent until it is
+     * acknowledged, so a resend under the same idempotency key never carries other rows.
+     */
+    public static class Chunk {
+        private int lapNumber;
+        private String afterTagId;
+        private String toTagId;
+        private String idempotencyKey;
+        private boolean acked;
+        private long tagsSent;
+        private long[] rowIds;
+        private long[] rowChangeSeqs;
+
+        public Chunk() {
+        }
+
+        public Chunk(int lapNumber, String afterTagId, String toTagId, String idempotencyKey) {
+            this.lapNumber = lapNumber;
+            this.afterTagId = afterTagId;
+            this.toTagId = toTagId;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        public int getLapNumber() {
+            return lapNumber;
+        }
+
+        public void setLapNumber(int lapNumber) {
+            this.lapNumber = lapNumber;
+        }
+
+        public String getAfterTagId() {
+            return afterTagId;
+        }
+
+        public void setAfterTagId(String afterTagId) {
+            this.afterTagId = afterTagId;
+        }
+
+        public String getToTagId() {
+            return toTagId;
+        }
+
+        public void setToTagId(String toTagId) {
+            this.toTagId = toTagId;
+        }
+
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+
+        public void setIdempotencyKey(String idempotencyKey) {
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        public boolean isAcked() {
+            return acked;
+        }
+
+        public void setAcked(boolean acked) {
+            this.acked = acked;
+        }
+
+        public long getTagsSent() {
+            return tagsSent;
+        }
+
+        public void setTagsSent(long tagsSent) {
+            this.tagsSent = tagsSent;
+        }
+
+        public long[] getRowIds() {
+            return rowIds;
+        }
+
+        public void setRowIds(long[] rowIds) {
+            this.rowIds = rowIds;
+        }
+
+        public long[] getRowChangeSeqs() {
+            return rowChangeSeqs;
+        }
+
+        public void setRowChangeSeqs(long[] rowChangeSeqs) {
+            this.rowChangeSeqs = rowChangeSeqs;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.rfid;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streams the {@code /api/rfid/sync} payload
+ * ({@code {"marathon":..,"laps":[{"lapNumber":..,"tags":[..]}]}}) straight into the
+ * HTTP request body. Tags are pulled lap by lap from a database cursor and written
+ * with a JsonGenerator as they arrive, so memory stays flat however big the event
+ * is and the upload starts with the first row. The body is re-queried if OkHttp
+ * has to send it again, so a request that carries an idempotency key uses
+ * preloaded tags instead, which send the same payload on every attempt.
+ */
+public class SyncRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final TagStorage storage;
+    private final String marathonName;
+    private final Map<Integer, List<String>> lapIpMap;
+    private final Map<Integer, List<TagDetail>> lapTags;
+    private final boolean merge;
+    private final boolean gzip;
+    private long tagsWritten;
+    private final List<TagDetail> sentTags = new ArrayList<>();
+
+    /**
+     * @param merge keep one tag per tag_id within a lap (the latest seen) and send
+     *              laps even when they have no tags, as the merge sync always did
+     */
+    public SyncRequestBody(TagStorage storage, String marathonName, Map<Integer, List<String>> lapIpMap,
+                           boolean merge, boolean gzip) {
+        this.storage = storage;
+        this.marathonName = marathonName;
+        this.lapIpMap = new TreeMap<>(lapIpMap);
+        this.lapTags = null;
+        this.merge = merge;
+        this.gzip = gzip;
+    }
+
+    /** Sends tags that were already loaded, e.g. a small background-sync delta. */
+    public SyncRequestBody(String marathonName, Map<Integer, List<TagDetail>> lapTags, boolean gzip) {
+        this(marathonName, lapTags, false, gzip);
+    }
+
+    /** @param merge send laps even when they have no tags; the tags are sent as given */
+    public SyncRequestBody(String marathonName, Map<Integer, List<TagDetail>> lapTags, boolean merge, boolean gzip) {
+        this.storage = null;
+        this.marathonName = marathonName;
+        this.lapTags = new TreeMap<>(lapTags);
+        this.lapIpMap = new TreeMap<>();
+        lapTags.keySet().forEach(lap -> lapIpMap.put(lap, List.of()));
+        this.merge = merge;
+        this.gzip = gzip;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /** Tags written by the last {@link #writeTo} call. */
+    public long getTagsWritten() {
+        return tagsWritten;
+    }
+
+    /**
+     * The rows a body of preloaded tags wrote in the last {@link #writeTo} call, with
+     * their id and change_seq, so exactly those can be cleared once the server acknowledged them.
+     */
+    public List<TagDetail> getSentTags() {
+        return sentTags;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        tagsWritten = 0;
+        sentTags.clear();
+        if (gzip) {
+            try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+                writeJson(gzipSink.outputStream());
+            }
+        } else {
+            writeJson(sink.outputStream());
+        }
+    }
+
+    private void writeJson(OutputStream out) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeStringField("marathon", marathonName);
+            json.writeArrayFieldStart("laps");
+            if (lapTags == null) {
+                writeAllLaps(json);
+            } else {
+                for (Map.Entry<Integer, List<TagDetail>> entry : lapTags.entrySet()) {
+                    writeLap(json, entry.getKey(), entry.getValue());
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeLap(JsonGenerator json, int lapNumber, List<TagDetail> tags) throws IOException {
+        if (tags.isEmpty() && !merge) {
+            return;
+        }
+        openLap(json, lapNumber);
+        for (TagDetail tag : tags) {
+            writeTag(json, tag);
+            sentTags.add(tag);
+        }
+        closeLap(json);
+    }
+
+    /** Writes every lap from a single cursor over the whole lap mapping; rows arrive ordered by lap. */
+    private void writeAllLaps(JsonGenerator json) throws IOException {
+        int[] openLap = {Integer.MIN_VALUE};
+        Iterator<Integer> pendingLaps = lapIpMap.keySet().iterator();
+        storage.forEachTagByLap(lapIpMap, merge, (lapNumber, tag) -> {
+            try {
+                if (lapNumber != openLap[0]) {
+                    if (openLap[0] != Integer.MIN_VALUE) {
+                        closeLap(json);
+                    }
+                    writeEmptyLapsBefore(json, pendingLaps, lapNumber);
+                    openLap(json, lapNumber);
+                    openLap[0] = lapNumber;
+                }
+                writeTag(json, tag);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (openLap[0] != Integer.MIN_VALUE) {
+            closeLap(json);
+        }
+        writeEmptyLapsBefore(json, pendingLaps, Integer.MAX_VALUE);
+    }
+
+    /** Merge syncs report every selected lap, so laps without tags are written empty. */
+    private void writeEmptyLapsBefore(JsonGenerator json, Iterator<Integer> pendingLaps, int lapNumber)
+            throws IOException {
+        while (pendingLaps.hasNext()) {
+            int pending = pendingLaps.next();
+            if (pending >= lapNumber) {
+                return;
+            }
+            if (merge) {
+                openLap(json, pending);
+                closeLap(json);
+            }
+        }
+    }
+
+    private void writeTag(JsonGenerator json, TagDetail tag) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("tagId", tag.getTagId());
+        json.writeNumberField("antenna", tag.getAntenna());
+        writeInstant(json, "firstSeen", tag.getFirstSeen());
+        writeInstant(json, "lastSeen", tag.getLastSeen());
+        json.writeEndObject();
+        tagsWritten++;
+    }
+
+    private static void closeLap(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    private static void openLap(JsonGenerator json, int lapNumber) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("lapNumber", lapNumber);
+        json.writeArrayFieldStart("tags");
+    }
+
+    private static void writeInstant(JsonGenerator json, String field, Instant value) throws IOException {
+        if (value == null) {
+            json.writeNullField(field);
+        } else {
+            json.writeStringField(field, value.toString());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.rfid;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The one HTTP client every sync and upload call goes through. It keeps pooled
+ * keep-alive connections (HTTP/2 where the server negotiates it), bounded
+ * timeouts, jittered exponential retries for idempotent calls and a configurable
+ * base URL, and counts calls, latency and bytes on the wire. The shared
+ * ObjectMapper lives here too.
+ */
+public class SyncTransport {
+    public static final String DEFAULT_BASE_URL = "http://localhost:8083";
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5_000;
+    public static final long DEFAULT_READ_TIMEOUT_MILLIS = 120_000;
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 60_000;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 300_000;
+    public static final int DEFAULT_MAX_RETRIES = 4;
+    public static final long DEFAULT_RETRY_BASE_MILLIS = 250;
+    public static final long DEFAULT_RETRY_MAX_MILLIS = 10_000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    public record Reply(int code, String body) {
+        public boolean isSuccessful() {
+            return code >= 200 && code < 300;
+        }
+    }
+
+    public record Stats(long calls, long failures, long retries, long bytesSent, long bytesReceived,
+                        double avgLatencyMillis, double maxLatencyMillis) {
+    }
+
+    private final OkHttpClient client;
+    private final String baseUrl;
+    private final int maxRetries;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile Metrics metrics;
+
+    public SyncTransport() {
+        this(DEFAULT_BASE_URL, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS,
+                DEFAULT_WRITE_TIMEOUT_MILLIS, DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_MILLIS, false,
+                DEFAULT_MAX_RETRIES, DEFAULT_RETRY_BASE_MILLIS, DEFAULT_RETRY_MAX_MILLIS);
+    }
+
+    /**
+     * @param http2PriorKnowledge speak cleartext HTTP/2 (h2c) without an upgrade; over
+     *                            TLS HTTP/2 is negotiated automatically either way
+     */
+    public SyncTransport(String baseUrl, long connectTimeoutMillis, long readTimeoutMillis, long writeTimeoutMillis,
+                         int maxIdleConnections, long keepAliveMillis, boolean http2PriorKnowledge,
+                         int maxRetries, long retryBaseMillis, long retryMaxMillis) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBaseMillis = Math.max(1, retryBaseMillis);
+        this.retryMaxMillis = Math.max(this.retryBaseMillis, retryMaxMillis);
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .protocols(http2PriorKnowledge
+                        ? List.of(Protocol.H2_PRIOR_KNOWLEDGE)
+                        : List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .readTimeout(Duration.ofMillis(readTimeoutMillis))
+                .writeTimeout(Duration.ofMillis(writeTimeoutMillis))
+                // Retries are decided here, per call, not silently by OkHttp
+                .retryOnConnectionFailure(false)
+                .eventListener(new ByteCounter())
+                .build();
+    }
+
+    public static SyncTransport fromConfig(AppConfig config) {
+        return new SyncTransport(
+                config.getString("sync.baseUrl", DEFAULT_BASE_URL),
+                config.getLong("sync.connectTimeoutMillis", DEFAULT_CONNECT_TIMEOUT_MILLIS),
+                config.getLong("sync.readTimeoutMillis", DEFAULT_READ_TIMEOUT_MILLIS),
+                config.getLong("sync.writeTimeoutMillis", DEFAULT_WRITE_TIMEOUT_MILLIS),
+                config.getInt("sync.maxIdleConnections", DEFAULT_MAX_IDLE_CONNECTIONS),
+                config.getLong("sync.keepAliveMillis", DEFAULT_KEEP_ALIVE_MILLIS),
+                config.getBoolean("sync.http2PriorKnowledge", false),
+                config.getInt("sync.maxRetries", DEFAULT_MAX_RETRIES),
+                config.getLong("sync.retryBaseMillis", DEFAULT_RETRY_BASE_MILLIS),
+                config.getLong("sync.retryMaxMillis", DEFAULT_RETRY_MAX_MILLIS));
+    }
+
+    /** Adds per-path request latency and request body size histograms. */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ObjectMapper getMapper() {
+        return MAPPER;
+    }
+
+    public String url(String path) {
+        return baseUrl + path;
+    }
+
+    /**
+     * POSTs {@code body} to {@code path} and reads the whole response. Idempotent
+     * calls are retried with full-jitter exponential backoff on I/O errors, 429 and
+     * 5xx; the body must then be replayable.
+     */
+    public Reply post(String path, RequestBody body, Map<String, String> headers, boolean idempotent)
+            throws IOException {
+        Request.Builder builder = new Request.Builder().url(url(path)).post(body);
+        headers.forEach(builder::header);
+        Request request = builder.build();
+
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            calls.increment();
+            try (Response response = client.newCall(request).execute()) {
+                String responseBody = response.body() != null ? response.body().string() : "";
+                recordLatency(path, System.nanoTime() - start);
+                Reply reply = new Reply(response.code(), responseBody);
+                if (!idempotent || attempt >= maxRetries || !isRetryable(reply.code())) {
+                    if (!reply.isSuccessful()) failures.increment();
+                    return reply;
+                }
+            } catch (IOException e) {
+                recordLatency(path, System.nanoTime() - start);
+                if (!idempotent || attempt >= maxRetries) {
+                    failures.increment();
+                    throw e;
+                }
+                System.err.println("Retrying " + path + " after: " + e.getMessage());
+            }
+            retries.increment();
+            backoff(attempt);
+        }
+    }
+
+    public Stats getStats() {
+        long n = calls.sum();
+        return new Stats(n, failures.sum(), retries.sum(), bytesSent.sum(), bytesReceived.sum(),
+                n == 0 ? 0 : latencyNanos.sum() / 1_000_000.0 / n, maxLatencyNanos.get() / 1_000_000.0);
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 429 || code >= 500;
+    }
+
+    private void backoff(int attempt) throws IOException {
+        long ceiling = Math.min(retryMaxMillis, retryBaseMillis << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private void recordLatency(String path, long nanos) {
+        latencyNanos.add(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        Metrics m = metrics;
+        if (m != null) {
+            m.timer("rfid_sync_request_seconds", "Sync HTTP call latency per attempt", "path", path).record(nanos);
+        }
+    }
+
+    private final class ByteCounter extends EventListener {
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            bytesSent.add(request.headers().byteCount());
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            bytesSent.add(byteCount);
+            Metrics m = metrics;
+            if (m != null) {
+                m.histogram("rfid_sync_payload_bytes", "Sync request body size on the wire", 1, Metrics.SIZE_BUCKETS,
+                        "path", call.request().url().encodedPath()).record(byteCount);
+            }
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bytesReceived.add(byteCount);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.rfid;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads CSV files in the downloadReport layout
+ * ({@code tagId,antenna,firstSeen,lastSeen,reader}) into tag_details. The file is
+ * streamed through COPY into a temporary staging table and then merged into the
+ * storage's current event with the same unique_tag semantics as the live upsert:
+ * earliest first_seen and latest last_seen win. Other storages get the parsed
+ * rows through saveAll, which applies the same rule.
+ */
+public class TagCsvImporter {
+    private static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+
+    public interface ProgressListener {
+        void onProgress(long rows, long bytes, long totalBytes, double rowsPerSecond);
+    }
+
+    public record Result(long rowsCopied, long rowsMerged, long elapsedMillis) {
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? rowsCopied : rowsCopied * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private static final int BATCH_SIZE = 5_000;
+
+    private final TagStorage storage;
+
+    public TagCsvImporter(TagStorage storage) {
+        this.storage = storage;
+    }
+
+    public Result importCsv(Path csvFile, ProgressListener listener) throws IOException, SQLException {
+        long totalBytes = Files.size(csvFile);
+        long start = System.nanoTime();
+        if (!(storage instanceof TagStorageService postgresStorage)) {
+            return importBatches(csvFile, totalBytes, start, listener);
+        }
+
+        try (Connection conn = postgresStorage.getConnection();
+             InputStream in = new ProgressInputStream(Files.newInputStream(csvFile), totalBytes, start, listener)) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("""
+                            CREATE TEMP TABLE tag_details_import (
+                                tag_id VARCHAR(255),
+                                antenna INT,
+                                first_seen TIMESTAMPTZ,
+                                last_seen TIMESTAMPTZ,
+                                reader_ip VARCHAR(255)
+                            ) ON COMMIT DROP
+                            """);
+                }
+
+                CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+                long copied = copyManager.copyIn(
+                        "COPY tag_details_import (tag_id, antenna, first_seen, last_seen, reader_ip) "
+                                + "FROM STDIN WITH (FORMAT csv, HEADER true)",
+                        in, 1 << 16);
+
+                // timestamptz -> timestamp converts to the session time zone, matching setTimestamp()
+                long merged;
+                try (PreparedStatement ps = conn.prepareStatement("""
+                            INSERT INTO tag_details (event_id, tag_id, antenna, first_seen, last_seen, reader_ip)
+                            SELECT ?, tag_id,
+                                   COALESCE((array_agg(antenna ORDER BY first_seen))[1], 0),
+                                   min(first_seen)::timestamp,
+                                   max(last_seen)::timestamp,
+                                   reader_ip
+                            FROM tag_details_import
+                            WHERE tag_id IS NOT NULL AND reader_ip IS NOT NULL
+                            GROUP BY tag_id, reader_ip
+                            ON CONFLICT ON CONSTRAINT unique_tag
+                            DO UPDATE SET first_seen = LEAST(tag_details.first_seen, EXCLUDED.first_seen),
+                                          last_seen = GREATEST(tag_details.last_seen, EXCLUDED.last_seen),
+                                          change_seq = nextval('tag_details_change_seq'),
+                                          status = 'NOT_SYNCED'
+                            WHERE EXCLUDED.first_seen < tag_details.first_seen
+                               OR EXCLUDED.last_seen > tag_details.last_seen
+                            """)) {
+                    ps.setLong(1, postgresStorage.getEventId());
+                    merged = ps.executeUpdate();
+                }
+                conn.commit();
+                return new Result(copied, merged, (System.nanoTime() - start) / 1_000_000);
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /** Storages without COPY get the rows parsed here and upserted through saveAll in batches. */
+    private Result importBatches(Path csvFile, long totalBytes, long start, ProgressListener listener)
+            throws IOException {
+        long rows = 0;
+        List<TagDetail> batch = new ArrayList<>(BATCH_SIZE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ProgressInputStream(Files.newInputStream(csvFile), totalBytes, start, listener),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",", -1);
+                if (fields.length < 5 || fields[0].isEmpty() || fields[4].isEmpty()) continue;
+                rows++;
+                batch.add(new TagDetail(fields[0],
+                        fields[1].isEmpty() ? 0 : Integer.parseInt(fields[1]),
+                        fields[2].isEmpty() ? null : Instant.parse(fields[2]),
+                        fields[3].isEmpty() ? null : Instant.parse(fields[3]),
+                        fields[4]));
+                if (batch.size() == BATCH_SIZE) {
+                    storage.saveAll(batch);
+                    batch.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid row " + (rows + 1) + ": " + e.getMessage(), e);
+        }
+        storage.saveAll(batch);
+        return new Result(rows, rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Counts bytes and data rows as COPY pulls them and reports progress at most 4 times a second. */
+    private static final class ProgressInputStream extends FilterInputStream {
+        private final long totalBytes;
+        private final long start;
+        private final ProgressListener listener;
+        private long bytes = 0;
+        private long lines = 0;
+        private long lastReport = 0;
+        private boolean finished = false;
+
+        ProgressInputStream(InputStream in, long totalBytes, long start, ProgressListener listener) {
+            super(in);
+            this.totalBytes = totalBytes;
+            this.start = start;
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytes++;
+                if (b == '\n') lines++;
+                report(false);
+            } else {
+                report(true);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) {
+                bytes += n;
+                for (int i = off; i < off + n; i++) {
+                    if (buf[i] == '\n') lines++;
+                }
+                report(false);
+            } else if (n < 0) {
+                report(true);
+            }
+            return n;
+        }
+
+        private void report(boolean done) {
+            if (listener == null || finished) return;
+            finished = done;
+            long now = System.nanoTime();
+            if (!done && now - lastReport < PROGRESS_INTERVAL_NANOS) return;
+            lastReport = now;
+            long rows = Math.max(0, lines - 1);
+            double seconds = (now - start) / 1_000_000_000.0;
+            listener.onProgress(rows, bytes, totalBytes, seconds > 0 ? rows / seconds : rows);
+        }
+    }
+}
@@ -18,10 +18,38 @@ public class TagDetail {
     }
 
     private TagStatus status;
+    private long id;
+    private long changeSeq;
+    private long enqueuedNanos;
 
     public TagDetail() {
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    /** {@link System#nanoTime()} when the read entered the processor queue, or 0. */
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    public void setEnqueuedNanos(long enqueuedNanos) {
+        this.enqueuedNanos = enqueuedNanos;
+    }
+
     public String getReader() {
         return reader;
     }
@@ -69,4 +97,9 @@ public class TagDetail {
         this.lastSeen = lastSeen;
         this.reader = reader;
     }
+
+    /** Reader timestamps are microseconds since the epoch; rounds toward the past for times before it. */
+    public static Instant instantOfMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000L);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+package com.rfid;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-capacity ingest buffer between the reader listener threads (many
+ * producers) and the tag processor (single consumer). The slot arrays are
+ * allocated once, and what happens when the buffer is full is decided by the
+ * {@link OverflowPolicy} instead of letting the heap grow.
+ */
+public class TagRingBuffer {
+    public static final int DEFAULT_CAPACITY = 65_536;
+    private static final long EMPTY = -1L;
+
+    public enum OverflowPolicy {
+        /** Producer waits until the consumer frees a slot. */
+        BLOCK,
+        /** Oldest pending read is discarded to make room. */
+        DROP_OLDEST,
+        /**
+         * A read for an (EPC, reader) that is already pending is merged into that
+         * slot; when full and nothing matches, the oldest read is discarded.
+         */
+        COALESCE
+    }
+
+    private final TagDetail[] slots;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    // COALESCE only: open-addressing table of the sequence numbers of pending slots, probed by (EPC, reader)
+    // with the Strings' cached hash codes and compared against the slot itself, so publishing allocates nothing
+    private final long[] pendingSeqs;
+    private final int pendingMask;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private long head = 0;
+    private long tail = 0;
+    private int highWaterMark = 0;
+    private long published = 0;
+    private long dropped = 0;
+    private long coalesced = 0;
+    private long blockedNanos = 0;
+
+    public TagRingBuffer(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.slots = new TagDetail[capacity];
+        if (policy == OverflowPolicy.COALESCE) {
+            // At most one entry per slot, so the table never gets more than half full
+            pendingSeqs = new long[Integer.highestOneBit(capacity * 2 - 1) << 1];
+            Arrays.fill(pendingSeqs, EMPTY);
+            pendingMask = pendingSeqs.length - 1;
+        } else {
+            pendingSeqs = null;
+            pendingMask = 0;
+        }
+    }
+
+    /**
+     * Publishes a read. Returns false only if the producer was interrupted while
+     * waiting under {@link OverflowPolicy#BLOCK}.
+     */
+    public boolean publish(TagDetail tag) {
+        lock.lock();
+        try {
+            published++;
+            if (pendingSeqs != null && coalesceInto(tag)) {
+                return true;
+            }
+            if (tail - head == capacity) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    long start = System.nanoTime();
+                    try {
+                        while (tail - head == capacity) {
+                            notFull.await();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped++;
+                        return false;
+                    } finally {
+                        blockedNanos += System.nanoTime() - start;
+                    }
+                } else {
+                    removeHead();
+                    dropped++;
+                }
+            }
+            slots[(int) (tail % capacity)] = tag;
+            if (pendingSeqs != null) {
+                indexPending(tail, tag);
+            }
+            tail++;
+            int size = (int) (tail - head);
+            if (size > highWaterMark) {
+                highWaterMark = size;
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean coalesceInto(TagDetail tag) {
+        TagDetail pending = null;
+        for (int i = hash(tag) & pendingMask; pendingSeqs[i] != EMPTY; i = (i + 1) & pendingMask) {
+            TagDetail candidate = slots[(int) (pendingSeqs[i] % capacity)];
+            if (Objects.equals(candidate.getTagId(), tag.getTagId())
+                    && Objects.equals(candidate.getReader(), tag.getReader())) {
+                pending = candidate;
+                break;
+            }
+        }
+        if (pending == null) {
+            return false;
+        }
+        if (tag.getFirstSeen() != null && (pending.getFirstSeen() == null || tag.getFirstSeen().isBefore(pending.getFirstSeen()))) {
+            pending.setFirstSeen(tag.getFirstSeen());
+        }
+        Instant last = tag.getLastSeen();
+        if (last != null && (pending.getLastSeen() == null || last.isAfter(pending.getLastSeen()))) {
+            pending.setLastSeen(last);
+        }
+        coalesced++;
+        return true;
+    }
+
+    private void indexPending(long seq, TagDetail tag) {
+        int i = hash(tag) & pendingMask;
+        while (pendingSeqs[i] != EMPTY) {
+            i = (i + 1) & pendingMask;
+        }
+        pendingSeqs[i] = seq;
+    }
+
+    /** Removes {@code seq} with backward-shift deletion, as in EmbeddedTagStorage's index. */
+    private void unindexPending(long seq, TagDetail tag) {
+        int gap = hash(tag) & pendingMask;
+        while (pendingSeqs[gap] != seq) {
+            if (pendingSeqs[gap] == EMPTY) return;
+            gap = (gap + 1) & pendingMask;
+        }
+        for (int j = (gap + 1) & pendingMask; pendingSeqs[j] != EMPTY; j = (j + 1) & pendingMask) {
+            int home = hash(slots[(int) (pendingSeqs[j] % capacity)]) & pendingMask;
+            if (((j - home) & pendingMask) >= ((j - gap) & pendingMask)) {
+                pendingSeqs[gap] = pendingSeqs[j];
+                gap = j;
+            }
+        }
+        pendingSeqs[gap] = EMPTY;
+    }
+
+    private static int hash(TagDetail tag) {
+        int h = Objects.hashCode(tag.getTagId()) * 31 + Objects.hashCode(tag.getReader());
+        return h ^ (h >>> 16);
+    }
+
+    private TagDetail removeHead() {
+        int index = (int) (head % capacity);
+        TagDetail tag = slots[index];
+        if (pendingSeqs != null) {
+            unindexPending(head, tag);
+        }
+        slots[index] = null;
+        head++;
+        return tag;
+    }
+
+    public TagDetail poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (tail == head) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            TagDetail tag = removeHead();
+            notFull.signal();
+            return tag;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The oldest queued read, left in place, or null if the queue is empty. */
+    public TagDetail peek() {
+        lock.lock();
+        try {
+            return tail == head ? null : slots[(int) (head % capacity)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int drainTo(Collection<? super TagDetail> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    public int drainTo(Collection<? super TagDetail> target, int maxElements) {
+        lock.lock();
+        try {
+            int count = 0;
+            while (count < maxElements && tail != head) {
+                target.add(removeHead());
+                count++;
+            }
+            if (count > 0) {
+                notFull.signalAll();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return (int) (tail - head);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats((int) (tail - head), capacity, highWaterMark, published, dropped, coalesced,
+                    blockedNanos / 1_000_000);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record Stats(int occupancy, int capacity, int highWaterMark, long published,
+                        long dropped, long coalesced, long blockedMillis) {
+        @Override
+        public String toString() {
+            return String.format("occupancy=%d/%d, high water=%d, published=%d, dropped=%d, coalesced=%d, blocked=%dms",
+                    occupancy, capacity, highWaterMark, published, dropped, coalesced, blockedMillis);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.rfid;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-memory first/last-seen state per (EPC, reader), so repeat reads of a tag
+ * that is already stored only touch memory. Entries are kept in lock-striped LRU
+ * segments with a bounded total size and an idle TTL. A read is written through
+ * to storage only when the entry is new, its first_seen moved earlier, or its
+ * last_seen moved past the flush granularity since the last write.
+ */
+public class TagStateCache {
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    public static final long DEFAULT_TTL_MILLIS = 6 * 60 * 60 * 1000L;
+    public static final long DEFAULT_FLUSH_GRANULARITY_MILLIS = 1_000;
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final long ttlMillis;
+    private final long flushGranularityMillis;
+    private final int maxEntries;
+    private final Queue<TagDetail> evictedDirty = new ConcurrentLinkedQueue<>();
+
+    public TagStateCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_FLUSH_GRANULARITY_MILLIS);
+    }
+
+    public TagStateCache(int maxEntries, long ttlMillis, long flushGranularityMillis) {
+        this.maxEntries = Math.max(SEGMENT_COUNT, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.flushGranularityMillis = Math.max(0, flushGranularityMillis);
+        int perSegment = (this.maxEntries + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    public static TagStateCache fromConfig(AppConfig config) {
+        return new TagStateCache(
+                config.getInt("cache.maxEntries", DEFAULT_MAX_ENTRIES),
+                config.getLong("cache.ttlMillis", DEFAULT_TTL_MILLIS),
+                config.getLong("cache.flushGranularityMillis", DEFAULT_FLUSH_GRANULARITY_MILLIS));
+    }
+
+    /**
+     * Loads existing rows so that reads of tags stored before a restart are not
+     * treated as new. Stops once the cache is full.
+     */
+    public int warm(TagStorage storage) {
+        int[] loaded = {0};
+        storage.forEachTag(tag -> {
+            if (tag.getTagId() == null || tag.getFirstSeen() == null || tag.getLastSeen() == null) {
+                return true;
+            }
+            Segment segment = segmentFor(key(tag));
+            synchronized (segment) {
+                State state = new State(tag);
+                state.persistedFirstSeen = tag.getFirstSeen();
+                state.persistedLastSeen = tag.getLastSeen();
+                segment.map.putIfAbsent(key(tag), state);
+            }
+            return ++loaded[0] < maxEntries;
+        });
+        return loaded[0];
+    }
+
+    /**
+     * Folds a read into the cached state. Returns the row to persist, or null when
+     * the change is small enough to stay in memory.
+     */
+    public TagDetail apply(TagDetail read) {
+        String key = key(read);
+        Segment segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            State state = segment.map.get(key);
+            if (state != null && now - state.touchedMillis > ttlMillis) {
+                segment.map.remove(key);
+                state = null;
+            }
+            if (state == null) {
+                state = new State(read);
+                state.touchedMillis = now;
+                segment.map.put(key, state);
+                return state.markPersisted();
+            }
+
+            state.touchedMillis = now;
+            if (read.getFirstSeen() != null && read.getFirstSeen().isBefore(state.firstSeen)) {
+                state.firstSeen = read.getFirstSeen();
+            }
+            if (read.getLastSeen() != null && read.getLastSeen().isAfter(state.lastSeen)) {
+                state.lastSeen = read.getLastSeen();
+            }
+            boolean firstMoved = state.firstSeen.isBefore(state.persistedFirstSeen);
+            boolean lastMoved = state.lastSeen.toEpochMilli() - state.persistedLastSeen.toEpochMilli()
+                    >= flushGranularityMillis && state.lastSeen.isAfter(state.persistedLastSeen);
+            return firstMoved || lastMoved ? state.markPersisted() : null;
+        }
+    }
+
+    /** Forgets an entry whose write failed, so the next read of it is written again. */
+    public void invalidate(TagDetail tag) {
+        String key = key(tag);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.map.remove(key);
+        }
+    }
+
+    /** Forgets every entry of the given readers, e.g. after their rows were deleted. */
+    public void invalidateReaders(Collection<String> readers) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.map.values().removeIf(state -> readers.contains(state.reader));
+            }
+        }
+        evictedDirty.removeIf(tag -> readers.contains(tag.getReader()));
+    }
+
+    /** Entries evicted while they still held state newer than what was stored. */
+    public List<TagDetail> drainEvicted() {
+        List<TagDetail> drained = new ArrayList<>();
+        TagDetail tag;
+        while ((tag = evictedDirty.poll()) != null) {
+            drained.add(tag);
+        }
+        return drained;
+    }
+
+    /** Every entry holding state newer than what was stored, marked as persisted. */
+    public List<TagDetail> drainDirty() {
+        List<TagDetail> dirty = drainEvicted();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (State state : segment.map.values()) {
+                    if (state.isDirty()) {
+                        dirty.add(state.markPersisted());
+                    }
+                }
+            }
+        }
+        return dirty;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static String key(TagDetail tag) {
+        return tag.getTagId() + "|" + tag.getReader();
+    }
+
+    private final class Segment {
+        private final Map<String, State> map;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, State> eldest) {
+                    if (size() <= capacity) return false;
+                    if (eldest.getValue().isDirty()) {
+                        evictedDirty.add(eldest.getValue().markPersisted());
+                    }
+                    return true;
+                }
+            };
+        }
+    }
+
+    private static final class State {
+        private final String tagId;
+        private final String reader;
+        private final int antenna;
+        private Instant firstSeen;
+        private Instant lastSeen;
+        private Instant persistedFirstSeen;
+        private Instant persistedLastSeen;
+        private long touchedMillis;
+
+        State(TagDetail tag) {
+            this.tagId = tag.getTagId();
+            this.reader = tag.getReader();
+            this.antenna = tag.getAntenna();
+            this.firstSeen = tag.getFirstSeen();
+            this.lastSeen = tag.getLastSeen();
+            this.touchedMillis = System.currentTimeMillis();
+        }
+
+        boolean isDirty() {
+            return persistedFirstSeen == null
+                    || firstSeen.isBefore(persistedFirstSeen)
+                    || lastSeen.isAfter(persistedLastSeen);
+        }
+
+        TagDetail markPersisted() {
+            persistedFirstSeen = firstSeen;
+            persistedLastSeen = lastSeen;
+            return new TagDetail(tagId, antenna, firstSeen, lastSeen, reader);
+        }
+    }
+}
@@ -1,14 +1,46 @@
 package com.rfid;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 public interface TagStorage {
     Optional<TagDetail> findByTagIdAndReader(String tagId, String reader);
     void save(TagDetail tag);
+    void saveAll(List<TagDetail> tags);
     List<TagDetail> findAll();
+    long forEachTag(TagVisitor visitor);
+    default long forEachTagByReaders(List<String> readerIps, boolean latestPerTag, TagVisitor visitor) {
+        return forEachTagByReaders(readerIps, latestPerTag, null, null, visitor);
+    }
+    long forEachTagByReaders(List<String> readerIps, boolean latestPerTag, String afterTagId, String toTagId,
+                             TagVisitor visitor);
+    long forEachTagByLap(Map<Integer, List<String>> lapIpMap, boolean latestPerTag, LapTagVisitor visitor);
+    default Map<Integer, List<TagDetail>> findTagsByLap(Map<Integer, List<String>> lapIpMap, boolean latestPerTag) {
+        Map<Integer, List<TagDetail>> lapTags = new TreeMap<>();
+        forEachTagByLap(lapIpMap, latestPerTag, (lap, tag) -> {
+            lapTags.computeIfAbsent(lap, l -> new ArrayList<>()).add(tag);
+            return true;
+        });
+        return lapTags;
+    }
+    Map<Integer, List<String>> findTagIdBoundaries(Map<Integer, List<String>> lapIpMap, boolean latestPerTag,
+                                                   int chunkSize);
+    long countAll();
+    long countByReaders(List<String> readerIps);
     void deleteAll();
+    void dropEvent(String eventName);
     List<TagDetail> fetchUnsyncedIpTags();
-    List<TagDetail> findTagDetailsByIp(String ip);
     void deleteByReaderIps(List<String> readerIps);
+    List<TagDetail> fetchChangedTags(List<String> readerIps, long afterChangeSeq, int limit);
+    int markSynced(List<TagDetail> tags);
+    /**
+     * Deletes the {@code sent} rows at {@code readerIps} that have not changed since they were read, matched by
+     * id and change_seq as in {@link #markSynced}. With {@code latestPerTag} it also deletes the rows of the same
+     * tags last seen no later than the sent one, which a merge sync leaves out as superseded. Returns the rows it
+     * deleted, with at least their tag_id and reader.
+     */
+    List<TagDetail> deleteSynced(List<String> readerIps, List<TagDetail> sent, boolean latestPerTag);
 }
\ No newline at end of file
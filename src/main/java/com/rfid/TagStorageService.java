@@ -4,61 +4,128 @@ import javax.swing.text.html.HTML;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TagStorageService implements TagStorage {
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    public static final int DEFAULT_FETCH_SIZE = 5_000;
+    public static final String DEFAULT_EVENT_NAME = "default";
+
+    private final JdbcConnectionPool pool;
+    private final int fetchSize;
+    private final String eventName;
+    private final long eventId;
+    private final Map<String, Metrics.Histogram> queryLatency = new ConcurrentHashMap<>();
+    private volatile Metrics metrics;
 
     public TagStorageService(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(new JdbcConnectionPool(jdbcUrl, username, password));
+    }
+
+    public TagStorageService(JdbcConnectionPool pool) {
+        this(pool, DEFAULT_FETCH_SIZE);
+    }
+
+    public TagStorageService(JdbcConnectionPool pool, int fetchSize) {
+        this(pool, fetchSize, DEFAULT_EVENT_NAME);
+    }
+
+    /**
+     * @param eventName the event (marathon) whose partition of tag_details this
+     *                  storage reads and writes; created on first use
+     */
+    public TagStorageService(JdbcConnectionPool pool, int fetchSize, String eventName) {
+        this.pool = pool;
+        this.fetchSize = Math.max(1, fetchSize);
+        this.eventName = eventName;
 
         try {
             Class.forName("org.postgresql.Driver");
-            initTable();
+            try (Connection conn = getConnection()) {
+                new SchemaMigrator().migrate(conn);
+                this.eventId = createEvent(conn, eventName);
+                conn.commit();
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to initialize TagStorageService: " + e.getMessage(), e);
         }
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(jdbcUrl, username, password);
+    final Connection getConnection() throws SQLException {
+        return pool.getConnection();
     }
 
-    // ✅ Create table if not exists
-    private void initTable() {
-        String sql = """
-                CREATE TABLE IF NOT EXISTS tag_details (
-                    id SERIAL PRIMARY KEY,
-                    tag_id VARCHAR(255) NOT NULL,
-                    antenna INT NOT NULL,
-                    first_seen TIMESTAMP,
-                    last_seen TIMESTAMP,
-                    reader_ip VARCHAR(255) NOT NULL,
-                    status VARCHAR(20) NOT NULL DEFAULT 'NOT_SYNCED'
-                                CHECK (status IN ('SYNCED', 'NOT_SYNCED')),
-                    CONSTRAINT unique_tag UNIQUE(tag_id, reader_ip)
-                )
-                """;
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            e.printStackTrace();
+    public JdbcConnectionPool.Stats getPoolStats() {
+        return pool.getStats();
+    }
+
+    /** Records the latency of every public call, labelled by method. */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        metrics.gauge("rfid_db_pool_active", "Pooled connections in use", () -> pool.getStats().active());
+        metrics.gauge("rfid_db_pool_idle", "Pooled connections idle", () -> pool.getStats().idle());
+    }
+
+    /** Records how long one call of {@code method} took since {@code startNanos}; does nothing without metrics. */
+    private void record(String method, long startNanos) {
+        Metrics m = metrics;
+        if (m == null) {
+            return;
+        }
+        Metrics.Histogram latency = queryLatency.get(method);
+        if (latency == null) {
+            latency = m.timer("rfid_storage_query_seconds", "TagStorageService call latency", "method", method);
+            queryLatency.put(method, latency);
+        }
+        latency.record(System.nanoTime() - startNanos);
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public long getEventId() {
+        return eventId;
+    }
+
+    // ✅ Every event gets its own partition, so clearing one never touches another
+    static long createEvent(Connection conn, String name) throws SQLException {
+        long id;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO events (name) VALUES (?) ON CONFLICT (name) DO NOTHING")) {
+            ps.setString(1, name);
+            ps.executeUpdate();
         }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM events WHERE name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                id = rs.getLong(1);
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + partitionName(id)
+                    + " PARTITION OF tag_details FOR VALUES IN (" + id + ")");
+        }
+        return id;
+    }
+
+    private static String partitionName(long eventId) {
+        return "tag_details_e" + eventId;
     }
 
     @Override
     public Optional<TagDetail> findByTagIdAndReader(String tagId, String reader) {
-        String sql = "SELECT tag_id, antenna, first_seen, last_seen, reader_ip FROM tag_details WHERE tag_id = ? AND reader_ip = ?";
+        String sql = "SELECT tag_id, antenna, first_seen, last_seen, reader_ip FROM tag_details "
+                + "WHERE event_id = ? AND tag_id = ? AND reader_ip = ?";
+        long start = System.nanoTime();
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, tagId);
-            ps.setString(2,reader);
+            ps.setLong(1, eventId);
+            ps.setString(2, tagId);
+            ps.setString(3,reader);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     return Optional.of(new TagDetail(
@@ -72,49 +139,309 @@ public class TagStorageService implements TagStorage {
             }
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            record("findByTagIdAndReader", start);
         }
         return Optional.empty();
     }
 
     @Override
     public List<TagDetail> findAll() {
-        String sql = "SELECT tag_id, antenna, first_seen, last_seen, reader_ip FROM tag_details";
+        String sql = "SELECT tag_id, antenna, first_seen, last_seen, reader_ip FROM tag_details WHERE event_id = ?";
         List<TagDetail> tagDetails = new ArrayList<>();
 
+        long start = System.nanoTime();
         try (Connection con = getConnection();
-             PreparedStatement ps = con.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                TagDetail tagDetail = new TagDetail();
-                tagDetail.setTagId(rs.getString("tag_id"));
-                tagDetail.setAntenna(rs.getInt("antenna"));
-                tagDetail.setReader(rs.getString("reader_ip"));
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, eventId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    TagDetail tagDetail = new TagDetail();
+                    tagDetail.setTagId(rs.getString("tag_id"));
+                    tagDetail.setAntenna(rs.getInt("antenna"));
+                    tagDetail.setReader(rs.getString("reader_ip"));
 
-                Timestamp firstSeenTs = rs.getTimestamp("first_seen");
-                if (firstSeenTs != null) {
-                    tagDetail.setFirstSeen(firstSeenTs.toInstant());
-                }
-                Timestamp lastSeenTs = rs.getTimestamp("last_seen");
-                if (lastSeenTs != null) {
-                    tagDetail.setLastSeen(lastSeenTs.toInstant());
+                    Timestamp firstSeenTs = rs.getTimestamp("first_seen");
+                    if (firstSeenTs != null) {
+                        tagDetail.setFirstSeen(firstSeenTs.toInstant());
+                    }
+                    Timestamp lastSeenTs = rs.getTimestamp("last_seen");
+                    if (lastSeenTs != null) {
+                        tagDetail.setLastSeen(lastSeenTs.toInstant());
+                    }
+                    tagDetails.add(tagDetail);
                 }
-                tagDetails.add(tagDetail);
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
+        } finally {
+            record("findAll", start);
         }
         return tagDetails;
     }
 
+    // ✅ Stream rows through a server-side cursor instead of loading the whole table
+    @Override
+    public long forEachTag(TagVisitor visitor) {
+        String sql = "SELECT id, change_seq, tag_id, antenna, first_seen, last_seen, reader_ip, status "
+                + "FROM tag_details WHERE event_id = ?";
+        return streamTags("forEachTag", sql, ps -> ps.setLong(1, eventId), visitor);
+    }
+
+    @Override
+    public long forEachTagByReaders(List<String> readerIps, boolean latestPerTag, String afterTagId, String toTagId,
+                                    TagVisitor visitor) {
+        // latestPerTag keeps one row per tag_id across the readers: the one seen last
+        String sql = (latestPerTag
+                ? "SELECT DISTINCT ON (tag_id) id, change_seq, tag_id, antenna, first_seen, last_seen, reader_ip, status "
+                : "SELECT id, change_seq, tag_id, antenna, first_seen, last_seen, reader_ip, status ")
+                + "FROM tag_details WHERE event_id = ? AND reader_ip = ANY(?) "
+                + "AND (?::varchar IS NULL OR tag_id > ?) AND (?::varchar IS NULL OR tag_id <= ?) "
+                + (latestPerTag ? "ORDER BY tag_id, last_seen DESC" : "ORDER BY tag_id");
+        return streamTags("forEachTagByReaders", sql, ps -> {
+            ps.setLong(1, eventId);
+            ps.setArray(2, ps.getConnection().createArrayOf("varchar", readerIps.toArray()));
+            ps.setString(3, afterTagId);
+            ps.setString(4, afterTagId);
+            ps.setString(5, toTagId);
+            ps.setString(6, toTagId);
+        }, visitor);
+    }
+
+    @Override
+    public long forEachTagByLap(Map<Integer, List<String>> lapIpMap, boolean latestPerTag, LapTagVisitor visitor) {
+        // One round trip for the whole lap->readers mapping; rows arrive grouped by lap
+        String sql = "WITH laps AS (SELECT * FROM unnest(?::int[], ?::varchar[]) AS l(lap_number, reader_ip)) "
+                + (latestPerTag
+                        ? "SELECT DISTINCT ON (l.lap_number, t.tag_id) "
+                        : "SELECT ")
+                + "l.lap_number, t.tag_id, t.antenna, t.first_seen, t.last_seen, t.reader_ip, t.status "
+                + "FROM tag_details t JOIN laps l ON t.reader_ip = l.reader_ip WHERE t.event_id = ? "
+                + (latestPerTag
+                        ? "ORDER BY l.lap_number, t.tag_id, t.last_seen DESC"
+                        : "ORDER BY l.lap_number");
+        long visited = 0;
+
+        long start = System.nanoTime();
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                bindLapMapping(con, ps, lapIpMap);
+                ps.setLong(3, eventId);
+                ps.setFetchSize(fetchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        visited++;
+                        if (!visitor.visit(rs.getInt("lap_number"), mapRow(rs))) {
+                            break;
+                        }
+                    }
+                }
+            }
+            con.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to stream tags by lap: " + e.getMessage(), e);
+        } finally {
+            record("forEachTagByLap", start);
+        }
+        return visited;
+    }
+
+    @Override
+    public Map<Integer, List<String>> findTagIdBoundaries(Map<Integer, List<String>> lapIpMap, boolean latestPerTag,
+                                                          int chunkSize) {
+        // Every chunkSize-th tag_id of each lap plus its last one, so (previous, boundary] ranges cover the lap
+        String sql = "WITH laps AS (SELECT * FROM unnest(?::int[], ?::varchar[]) AS l(lap_number, reader_ip)) "
+                + "SELECT DISTINCT lap_number, tag_id FROM ("
+                + "SELECT lap_number, tag_id, "
+                + "row_number() OVER (PARTITION BY lap_number ORDER BY tag_id) AS rn, "
+                + "count(*) OVER (PARTITION BY lap_number) AS total "
+                + "FROM (SELECT " + (latestPerTag ? "DISTINCT " : "") + "l.lap_number, t.tag_id "
+                + "FROM tag_details t JOIN laps l ON t.reader_ip = l.reader_ip WHERE t.event_id = ?) s) n "
+                + "WHERE rn % ? = 0 OR rn = total ORDER BY lap_number, tag_id";
+        Map<Integer, List<String>> boundaries = new TreeMap<>();
+
+        long start = System.nanoTime();
+        try (Connection con = getConnection();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            bindLapMapping(con, ps, lapIpMap);
+            ps.setLong(3, eventId);
+            ps.setInt(4, Math.max(1, chunkSize));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    boundaries.computeIfAbsent(rs.getInt(1), lap -> new ArrayList<>()).add(rs.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to plan sync chunks: " + e.getMessage(), e);
+        } finally {
+            record("findTagIdBoundaries", start);
+        }
+        return boundaries;
+    }
+
+    private static void bindLapMapping(Connection con, PreparedStatement ps, Map<Integer, List<String>> lapIpMap)
+            throws SQLException {
+        List<Integer> laps = new ArrayList<>();
+        List<String> ips = new ArrayList<>();
+        lapIpMap.forEach((lap, readerIps) -> readerIps.forEach(ip -> {
+            laps.add(lap);
+            ips.add(ip);
+        }));
+        ps.setArray(1, con.createArrayOf("int4", laps.toArray()));
+        ps.setArray(2, con.createArrayOf("varchar", ips.toArray()));
+    }
+
+    private interface ParameterBinder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private long streamTags(String method, String sql, ParameterBinder binder, TagVisitor visitor) {
+        long visited = 0;
+
+        long start = System.nanoTime();
+        try (Connection con = getConnection()) {
+            // pgjdbc only uses a cursor (and honours the fetch size) inside a transaction
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                binder.bind(ps);
+                ps.setFetchSize(fetchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        visited++;
+                        TagDetail tag = mapRow(rs);
+                        tag.setId(rs.getLong("id"));
+                        tag.setChangeSeq(rs.getLong("change_seq"));
+                        if (!visitor.visit(tag)) {
+                            break;
+                        }
+                    }
+                }
+            }
+            con.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to stream tag_details: " + e.getMessage(), e);
+        } finally {
+            record(method, start);
+        }
+        return visited;
+    }
+
+    @Override
+    public long countAll() {
+        String sql = "SELECT count(*) FROM tag_details WHERE event_id = ?";
+        long start = System.nanoTime();
+        try (Connection con = getConnection();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, eventId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("SQL Error: " + e.getMessage());
+            return 0;
+        } finally {
+            record("countAll", start);
+        }
+    }
+
+    @Override
+    public long countByReaders(List<String> readerIps) {
+        String sql = "SELECT count(*) FROM tag_details WHERE event_id = ? AND reader_ip = ANY(?)";
+        long start = System.nanoTime();
+        try (Connection con = getConnection();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, eventId);
+            ps.setArray(2, con.createArrayOf("varchar", readerIps.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("SQL Error: " + e.getMessage());
+            return 0;
+        } finally {
+            record("countByReaders", start);
+        }
+    }
+
+    private static TagDetail mapRow(ResultSet rs) throws SQLException {
+        TagDetail tagDetail = new TagDetail();
+        tagDetail.setTagId(rs.getString("tag_id"));
+        tagDetail.setAntenna(rs.getInt("antenna"));
+        tagDetail.setReader(rs.getString("reader_ip"));
+
+        String statusStr = rs.getString("status");
+        if (statusStr != null) {
+            try {
+                tagDetail.setStatus(TagStatus.valueOf(statusStr));
+            } catch (IllegalArgumentException ex) {
+                System.err.println("Unknown status: " + statusStr);
+            }
+        }
+        Timestamp firstSeenTs = rs.getTimestamp("first_seen");
+        if (firstSeenTs != null) {
+            tagDetail.setFirstSeen(firstSeenTs.toInstant());
+        }
+        Timestamp lastSeenTs = rs.getTimestamp("last_seen");
+        if (lastSeenTs != null) {
+            tagDetail.setLastSeen(lastSeenTs.toInstant());
+        }
+        return tagDetail;
+    }
+
+    // ✅ Clearing the event truncates its partition instead of deleting row by row
     @Override
     public void deleteAll() {
-        String sql = "DELETE FROM tag_details";
+        long start = System.nanoTime();
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(sql);
+            stmt.execute("TRUNCATE " + partitionName(eventId));
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            record("deleteAll", start);
+        }
+    }
+
+    @Override
+    public void dropEvent(String name) {
+        if (eventName.equals(name)) {
+            // The current event keeps its (now empty) partition so ingest can go on
+            deleteAll();
+            return;
+        }
+        long start = System.nanoTime();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Long id = null;
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM events WHERE name = ?")) {
+                    ps.setString(1, name);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) id = rs.getLong(1);
+                    }
+                }
+                if (id == null) {
+                    conn.rollback();
+                    return;
+                }
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("ALTER TABLE tag_details DETACH PARTITION " + partitionName(id));
+                    stmt.execute("DROP TABLE " + partitionName(id));
+                }
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM events WHERE id = ?")) {
+                    ps.setLong(1, id);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to drop event " + name + ": " + e.getMessage(), e);
+        } finally {
+            record("dropEvent", start);
         }
     }
 
@@ -123,104 +450,272 @@ public class TagStorageService implements TagStorage {
         if (readerIps == null || readerIps.isEmpty()) {
             return;
         }
-        String placeholders = readerIps.stream()
-                .map(ip -> "?")
-                .collect(Collectors.joining(", "));
+        String partition = partitionName(eventId);
 
-        String sql = "DELETE FROM tag_details WHERE reader_ip IN (" + placeholders + ")";
-
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            for (int i = 0; i < readerIps.size(); i++) {
-                ps.setString(i + 1, readerIps.get(i));
+        long start = System.nanoTime();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    // Blocks ingest for the moment it takes to decide, so no row slips in unseen
+                    stmt.execute("LOCK TABLE " + partition + " IN SHARE ROW EXCLUSIVE MODE");
+                }
+                boolean othersLeft;
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE reader_ip <> ALL(?))")) {
+                    ps.setArray(1, conn.createArrayOf("varchar", readerIps.toArray()));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        othersLeft = rs.getBoolean(1);
+                    }
+                }
+                if (othersLeft) {
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "DELETE FROM " + partition + " WHERE reader_ip = ANY(?)")) {
+                        ps.setArray(1, conn.createArrayOf("varchar", readerIps.toArray()));
+                        ps.executeUpdate();
+                    }
+                } else {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("TRUNCATE " + partition);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-            ps.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            record("deleteByReaderIps", start);
         }
     }
 
     @Override
-    public List<TagDetail> fetchUnsyncedIpTags() {
-        String sql = "SELECT DISTINCT reader_ip FROM tag_details";
-        List<TagDetail> tagDetails = new ArrayList<>();
+    public List<TagDetail> fetchChangedTags(List<String> readerIps, long afterChangeSeq, int limit) {
+        String sql = "SELECT id, change_seq, tag_id, antenna, first_seen, last_seen, reader_ip, status "
+                + "FROM tag_details WHERE event_id = ? AND status = 'NOT_SYNCED' AND change_seq > ? "
+                + "AND reader_ip = ANY(?) ORDER BY change_seq LIMIT ?";
+        List<TagDetail> changed = new ArrayList<>();
 
+        long start = System.nanoTime();
         try (Connection con = getConnection();
-             PreparedStatement ps = con.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                TagDetail tagDetail = new TagDetail();
-                tagDetail.setReader(rs.getString("reader_ip"));
-                tagDetails.add(tagDetail);
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, eventId);
+            ps.setLong(2, afterChangeSeq);
+            ps.setArray(3, con.createArrayOf("varchar", readerIps.toArray()));
+            ps.setInt(4, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    TagDetail tag = mapRow(rs);
+                    tag.setId(rs.getLong("id"));
+                    tag.setChangeSeq(rs.getLong("change_seq"));
+                    changed.add(tag);
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw new RuntimeException("Failed to fetch changed tags: " + e.getMessage(), e);
+        } finally {
+            record("fetchChangedTags", start);
         }
+        return changed;
+    }
 
-        return tagDetails;
+    @Override
+    public int markSynced(List<TagDetail> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return 0;
+        }
+        // Rows whose change_seq moved on since they were read changed again and stay NOT_SYNCED
+        String sql = """
+                UPDATE tag_details t SET status = 'SYNCED'
+                FROM unnest(?::bigint[], ?::bigint[]) AS s(id, change_seq)
+                WHERE t.event_id = ? AND t.id = s.id AND t.change_seq = s.change_seq
+                """;
+        Long[] ids = new Long[tags.size()];
+        Long[] seqs = new Long[tags.size()];
+        for (int i = 0; i < tags.size(); i++) {
+            ids[i] = tags.get(i).getId();
+            seqs[i] = tags.get(i).getChangeSeq();
+        }
+
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, conn.createArrayOf("bigint", ids));
+            ps.setArray(2, conn.createArrayOf("bigint", seqs));
+            ps.setLong(3, eventId);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to mark " + tags.size() + " tags synced: " + e.getMessage(), e);
+        } finally {
+            record("markSynced", start);
+        }
     }
 
     @Override
-    public List<TagDetail> findTagDetailsByIp(String ip) {
-        String sql = "SELECT tag_id, antenna, first_seen, last_seen, reader_ip, status FROM tag_details WHERE reader_ip = ?";
+    public List<TagDetail> deleteSynced(List<String> readerIps, List<TagDetail> sent, boolean latestPerTag) {
+        if (sent == null || sent.isEmpty()) {
+            return List.of();
+        }
+        // Rows that changed while the sync was in flight no longer match and stay for the next one
+        String sql = """
+                WITH sent AS (
+                    SELECT t.id, t.change_seq, t.tag_id, t.last_seen
+                    FROM tag_details t JOIN unnest(?::bigint[], ?::bigint[]) AS s(id, change_seq)
+                        ON t.id = s.id AND t.change_seq = s.change_seq
+                    WHERE t.event_id = ? AND t.reader_ip = ANY(?)
+                ), synced AS (
+                    SELECT id, change_seq FROM sent
+                    UNION
+                    SELECT t.id, t.change_seq FROM tag_details t JOIN sent ON t.tag_id = sent.tag_id
+                    WHERE ? AND t.event_id = ? AND t.reader_ip = ANY(?) AND t.last_seen <= sent.last_seen
+                )
+                DELETE FROM tag_details t USING synced
+                WHERE t.event_id = ? AND t.id = synced.id AND t.change_seq = synced.change_seq
+                RETURNING t.tag_id, t.reader_ip
+                """;
+        Long[] ids = new Long[sent.size()];
+        Long[] seqs = new Long[sent.size()];
+        for (int i = 0; i < sent.size(); i++) {
+            ids[i] = sent.get(i).getId();
+            seqs[i] = sent.get(i).getChangeSeq();
+        }
+
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, conn.createArrayOf("bigint", ids));
+            ps.setArray(2, conn.createArrayOf("bigint", seqs));
+            Array readers = conn.createArrayOf("varchar", readerIps.toArray());
+            ps.setLong(3, eventId);
+            ps.setArray(4, readers);
+            ps.setBoolean(5, latestPerTag);
+            ps.setLong(6, eventId);
+            ps.setArray(7, readers);
+            ps.setLong(8, eventId);
+            List<TagDetail> deleted = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    TagDetail tag = new TagDetail();
+                    tag.setTagId(rs.getString("tag_id"));
+                    tag.setReader(rs.getString("reader_ip"));
+                    deleted.add(tag);
+                }
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete synced tags: " + e.getMessage(), e);
+        } finally {
+            record("deleteSynced", start);
+        }
+    }
+
+    @Override
+    public List<TagDetail> fetchUnsyncedIpTags() {
+        // Loose index scan: one index probe per distinct reader instead of a full table scan
+        String sql = """
+                WITH RECURSIVE readers AS (
+                    (SELECT reader_ip FROM tag_details WHERE event_id = ? ORDER BY reader_ip LIMIT 1)
+                    UNION ALL
+                    SELECT (SELECT t.reader_ip FROM tag_details t
+                            WHERE t.event_id = ? AND t.reader_ip > r.reader_ip ORDER BY t.reader_ip LIMIT 1)
+                    FROM readers r WHERE r.reader_ip IS NOT NULL
+                )
+                SELECT reader_ip FROM readers WHERE reader_ip IS NOT NULL
+                """;
         List<TagDetail> tagDetails = new ArrayList<>();
 
+        long start = System.nanoTime();
         try (Connection con = getConnection();
              PreparedStatement ps = con.prepareStatement(sql)) {
-
-            ps.setString(1, ip); // set parameter
+            ps.setLong(1, eventId);
+            ps.setLong(2, eventId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     TagDetail tagDetail = new TagDetail();
-                    tagDetail.setTagId(rs.getString("tag_id"));
-                    tagDetail.setAntenna(rs.getInt("antenna"));
                     tagDetail.setReader(rs.getString("reader_ip"));
-
-                    String statusStr = rs.getString("status");
-                    if (statusStr != null) {
-                        try {
-                            tagDetail.setStatus(TagStatus.valueOf(statusStr));
-                        } catch (IllegalArgumentException ex) {
-                            System.err.println("Unknown status: " + statusStr);
-                        }
-                    }
-                    Timestamp firstSeenTs = rs.getTimestamp("first_seen");
-                    if (firstSeenTs != null) {
-                        tagDetail.setFirstSeen(firstSeenTs.toInstant());
-                    }
-                    Timestamp lastSeenTs = rs.getTimestamp("last_seen");
-                    if (lastSeenTs != null) {
-                        tagDetail.setLastSeen(lastSeenTs.toInstant());
-                    }
                     tagDetails.add(tagDetail);
                 }
             }
         } catch (SQLException e) {
-            System.err.println("SQL Error: " + e.getMessage());
+            System.out.println(e.getMessage());
+        } finally {
+            record("fetchUnsyncedIpTags", start);
         }
+
         return tagDetails;
     }
 
     @Override
     public void save(TagDetail tag) {
         String sql = """
-                INSERT INTO tag_details (tag_id, antenna, first_seen, last_seen, reader_ip)
-                VALUES (?, ?, ?, ?, ?)
-                ON CONFLICT (tag_id,reader_ip)
-                DO UPDATE SET last_seen = EXCLUDED.last_seen
+                INSERT INTO tag_details (event_id, tag_id, antenna, first_seen, last_seen, reader_ip)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT (event_id, tag_id, reader_ip)
+                DO UPDATE SET last_seen = EXCLUDED.last_seen,
+                              change_seq = nextval('tag_details_change_seq'),
+                              status = 'NOT_SYNCED'
+                WHERE tag_details.last_seen IS DISTINCT FROM EXCLUDED.last_seen
                 """;
+        long start = System.nanoTime();
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, tag.getTagId());
-            ps.setInt(2, tag.getAntenna());
-            ps.setTimestamp(3, Timestamp.from(tag.getFirstSeen()));
-            ps.setTimestamp(4, Timestamp.from(tag.getLastSeen()));
-            ps.setString(5,tag.getReader());
+            ps.setLong(1, eventId);
+            ps.setString(2, tag.getTagId());
+            ps.setInt(3, tag.getAntenna());
+            ps.setTimestamp(4, Timestamp.from(tag.getFirstSeen()));
+            ps.setTimestamp(5, Timestamp.from(tag.getLastSeen()));
+            ps.setString(6,tag.getReader());
             ps.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            record("save", start);
+        }
+    }
+
+    // ✅ Upsert a batch of tags in one transaction, keeping the widest first/last seen window
+    @Override
+    public void saveAll(List<TagDetail> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+        String sql = """
+                INSERT INTO tag_details (event_id, tag_id, antenna, first_seen, last_seen, reader_ip)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT (event_id, tag_id, reader_ip)
+                DO UPDATE SET first_seen = LEAST(tag_details.first_seen, EXCLUDED.first_seen),
+                              last_seen = GREATEST(tag_details.last_seen, EXCLUDED.last_seen),
+                              change_seq = nextval('tag_details_change_seq'),
+                              status = 'NOT_SYNCED'
+                WHERE EXCLUDED.first_seen < tag_details.first_seen
+                   OR EXCLUDED.last_seen > tag_details.last_seen
+                """;
+        long start = System.nanoTime();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (TagDetail tag : tags) {
+                    ps.setLong(1, eventId);
+                    ps.setString(2, tag.getTagId());
+                    ps.setInt(3, tag.getAntenna());
+                    ps.setTimestamp(4, Timestamp.from(tag.getFirstSeen()));
+                    ps.setTimestamp(5, Timestamp.from(tag.getLastSeen()));
+                    ps.setString(6, tag.getReader());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save batch of " + tags.size() + " tags: " + e.getMessage(), e);
+        } finally {
+            record("saveAll", start);
         }
     }
 }
\ No newline at end of file
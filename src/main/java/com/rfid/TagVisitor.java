@@ -0,0 +1,8 @@
+package com.rfid;
+
+/** Receives rows streamed from a {@link TagStorage} cursor. */
+@FunctionalInterface
+public interface TagVisitor {
+    /** Returns false to stop the scan early. */
+    boolean visit(TagDetail tag);
+}
@@ -0,0 +1,62 @@
+package com.rfid;
+
+import javax.swing.Timer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Samples counters on a fixed Swing timer tick and pushes a value to its UI
+ * sink only when it changed, so label updates cost the same at 10 or 10,000
+ * reads per second. Sinks always run on the EDT.
+ */
+public class UiRefreshScheduler {
+    public static final int DEFAULT_REFRESH_HZ = 10;
+
+    private final List<Binding> bindings = new CopyOnWriteArrayList<>();
+    private final Timer timer;
+
+    public UiRefreshScheduler() {
+        this(DEFAULT_REFRESH_HZ);
+    }
+
+    public UiRefreshScheduler(int refreshHz) {
+        this.timer = new Timer(1000 / Math.max(1, refreshHz), e -> tick());
+        timer.start();
+    }
+
+    /** Returns a handle that removes the binding again. */
+    public Runnable register(IntSupplier source, IntConsumer sink) {
+        Binding binding = new Binding(source, sink);
+        bindings.add(binding);
+        return () -> bindings.remove(binding);
+    }
+
+    private void tick() {
+        for (Binding binding : bindings) {
+            int value = binding.source.getAsInt();
+            if (!binding.published || value != binding.lastValue) {
+                binding.published = true;
+                binding.lastValue = value;
+                binding.sink.accept(value);
+            }
+        }
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    private static final class Binding {
+        private final IntSupplier source;
+        private final IntConsumer sink;
+        private boolean published = false;
+        private int lastValue;
+
+        Binding(IntSupplier source, IntConsumer sink) {
+            this.source = source;
+            this.sink = sink;
+        }
+    }
+}
@@ -1,21 +1,30 @@
 package com.rfid;
 
-import javax.swing.*;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 public class Util {
-    private final RfidPanel rfidPanel;
+    private final LogPipeline pipeline;
 
     public Util(RfidPanel rfidPanel) {
-        this.rfidPanel = rfidPanel;
+        this.pipeline = rfidPanel == null ? null : new LogPipeline(rfidPanel::appendLogLines);
+    }
+
+    public Util(RfidPanel rfidPanel, AppConfig config) {
+        this.pipeline = rfidPanel == null ? null : LogPipeline.fromConfig(config, rfidPanel::appendLogLines);
+        if (rfidPanel != null) {
+            rfidPanel.setMaxLogLines(config.getInt("log.maxLines", RfidPanel.DEFAULT_MAX_LOG_LINES));
+        }
     }
 
     public void addLog(String message) {
-        if (rfidPanel == null) return;
-        SwingUtilities.invokeLater(() -> {
-            String ts = new SimpleDateFormat("HH:mm:ss").format(new Date());
-            rfidPanel.appendLog("[" + ts + "] " + message);
-        });
+        log(LogCategory.GENERAL, message);
+    }
+
+    public void log(LogCategory category, String message) {
+        if (pipeline == null) return;
+        pipeline.log(category, message);
+    }
+
+    public void log(LogCategory category, String pattern, Object... args) {
+        if (pipeline == null) return;
+        pipeline.log(category, pattern, args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package com.rfid;
+
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkedSyncTest {
+    private static final String READER = "10.0.0.1";
+    private static final Map<Integer, List<String>> LAPS = Map.of(1, List.of(READER));
+
+    @TempDir
+    Path baseDir;
+
+    private EmbeddedTagStorage storage;
+
+    @AfterEach
+    void closeStore() {
+        if (storage != null) storage.close();
+    }
+
+    @Test
+    void retryOfAnAppliedChunkSendsTheSamePayload() throws Exception {
+        storage = seeded();
+        List<String> payloads = new ArrayList<>();
+        ChunkedSync.ChunkSender sender = (body, key) -> {
+            payloads.add(write(body));
+            // The server applied the first attempt but its response was lost; meanwhile the race goes on
+            changeRows();
+            payloads.add(write(body));
+        };
+
+        ChunkedSync.Result result = new ChunkedSync(storage, 100, 1, progressFile()).run("m", LAPS, false, false,
+                sender, null);
+
+        assertTrue(result.isComplete());
+        assertEquals(payloads.get(0), payloads.get(1));
+        assertEquals(Set.of("T12", "T15A"), storedTagIds());
+    }
+
+    @Test
+    void resumedChunkResendsOnlyTheRowsItsKeyStandsFor() throws Exception {
+        storage = seeded();
+        Map<String, String> applied = new HashMap<>();
+        ChunkedSync.ChunkSender lostResponse = (body, key) -> {
+            applied.put(key, write(body));
+            changeRows();
+            throw new IOException("response lost");
+        };
+        ChunkedSync.Result failed = new ChunkedSync(storage, 100, 1, progressFile()).run("m", LAPS, false, false,
+                lostResponse, null);
+        assertFalse(failed.isComplete());
+        assertTrue(Files.exists(progressFile()));
+
+        List<TagDetail> resent = new ArrayList<>();
+        ChunkedSync.ChunkSender replay = (body, key) -> {
+            assertTrue(applied.containsKey(key), "resumed under the first attempt's key");
+            write(body);
+            resent.addAll(body.getSentTags());
+        };
+        ChunkedSync.Result resumed = new ChunkedSync(storage, 100, 1, progressFile()).run("m", LAPS, false, false,
+                replay, null);
+
+        assertTrue(resumed.resumed());
+        assertTrue(resumed.isComplete());
+        assertEquals(9, resent.size());
+        assertFalse(resent.stream().anyMatch(tag -> tag.getTagId().equals("T12") || tag.getTagId().equals("T15A")));
+        // The changed and the new row were not in what the server applied, so they wait for the next sync
+        assertEquals(Set.of("T12", "T15A"), storedTagIds());
+        assertFalse(Files.exists(progressFile()));
+    }
+
+    private EmbeddedTagStorage seeded() {
+        EmbeddedTagStorage seeded = new EmbeddedTagStorage(baseDir, "sync");
+        List<TagDetail> tags = new ArrayList<>();
+        for (int i = 10; i < 20; i++) {
+            tags.add(tag("T" + i, 1_000_000L * i));
+        }
+        seeded.saveAll(tags);
+        return seeded;
+    }
+
+    // One sent row gets a later last_seen and a new row lands inside the chunk's tag_id range
+    private void changeRows() {
+        storage.saveAll(List.of(tag("T12", 90_000_000L), tag("T15A", 91_000_000L)));
+    }
+
+    private static TagDetail tag(String tagId, long lastSeenMicros) {
+        return new TagDetail(tagId, 1, TagDetail.instantOfMicros(1_000_000L),
+                TagDetail.instantOfMicros(lastSeenMicros), READER);
+    }
+
+    private Set<String> storedTagIds() {
+        return storage.findAll().stream().map(TagDetail::getTagId).collect(Collectors.toSet());
+    }
+
+    private Path progressFile() {
+        return baseDir.resolve("sync-progress.json");
+    }
+
+    private static String write(SyncRequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer.readUtf8();
+    }
+}
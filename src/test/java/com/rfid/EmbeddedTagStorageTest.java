@@ -0,0 +1,197 @@
+package com.rfid;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedTagStorageTest {
+    private static final String EVENT = "test";
+    // The smallest log the store accepts, so checkpoints come every few hundred records
+    private static final int LOG_BYTES = 1 << 16;
+
+    @TempDir
+    Path baseDir;
+
+    private final List<EmbeddedTagStorage> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() {
+        opened.forEach(EmbeddedTagStorage::close);
+    }
+
+    @Test
+    void longIntMapKeepsChainsIntactThroughRemoveAndReinsert() {
+        EmbeddedTagStorage.LongIntMap map = new EmbeddedTagStorage.LongIntMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        // A small key space keeps the table dense, so most operations land in a probe chain
+        for (int op = 0; op < 200_000; op++) {
+            long key = random.nextInt(48) * 0x1_0000_0001L;
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, op);
+                expected.put(key, op);
+            }
+            if (op % 97 == 0) {
+                for (int k = 0; k < 48; k++) {
+                    long probe = k * 0x1_0000_0001L;
+                    assertEquals(expected.getOrDefault(probe, -1), map.get(probe), "key " + k + " after op " + op);
+                }
+            }
+        }
+        expected.keySet().forEach(map::remove);
+        for (int k = 0; k < 48; k++) {
+            assertEquals(-1, map.get(k * 0x1_0000_0001L));
+        }
+        map.put(7, 70);
+        assertEquals(70, map.get(7));
+    }
+
+    @Test
+    void recoversWhenCheckpointsFireInsideARecord() throws IOException {
+        EmbeddedTagStorage crashed = open();
+        Random random = new Random(7);
+        long micros = 1_700_000_000_000_000L;
+        // Inserts intern new strings and write rows, updates and deletes write one record each, so the log
+        // fills up, and checkpoints, in the middle of every kind of change
+        for (int round = 0; round < 4_000; round++) {
+            String tagId = "E" + random.nextInt(600);
+            String reader = "10.0.0." + random.nextInt(4);
+            int action = random.nextInt(10);
+            if (action == 0) {
+                crashed.deleteByReaderIps(List.of(reader));
+            } else if (action == 1) {
+                crashed.markSynced(crashed.fetchChangedTags(List.of(reader), 0, 20));
+            } else {
+                crashed.saveAll(List.of(tag(tagId, reader, micros += 1_000)));
+            }
+        }
+        assertTrue(latestLogGen() >= 5, "expected several checkpoints, log generation is " + latestLogGen());
+
+        // Never closed, like a crash: recovery replays the logs written since the last checkpoint
+        EmbeddedTagStorage recovered = open();
+        assertEquals(rows(crashed), rows(recovered));
+
+        recovered.close();
+        assertEquals(rows(crashed), rows(open()));
+    }
+
+    @Test
+    void ignoresATornLastRecord() throws IOException {
+        EmbeddedTagStorage crashed = open();
+        for (int i = 0; i < 5; i++) {
+            crashed.save(tag("T" + i, "r" + i, 1_000_000L * (i + 1)));
+        }
+        List<String> expected = rows(crashed);
+
+        // A row record whose body reached the file but whose length, written last, did not
+        Path log = logPath(latestLogGen());
+        int end = endOfRecords(log);
+        ByteBuffer torn = ByteBuffer.allocate(56);
+        torn.putInt(0).put((byte) 2).put((byte) 1).putShort((short) 0)
+                .putInt(3).putInt(0).putInt(1).putInt(1)
+                .putLong(5_000_000L).putLong(6_000_000L).putLong(99);
+        torn.flip();
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            ch.write(torn, end);
+        }
+
+        EmbeddedTagStorage recovered = open();
+        assertEquals(expected, rows(recovered));
+
+        // One delete record is shorter than the torn one, whose tail must not be read as the next record
+        recovered.deleteByReaderIps(List.of("r1"));
+        assertEquals(4, recovered.countAll());
+        assertEquals(rows(recovered), rows(open()));
+    }
+
+    @Test
+    void reusesRowsAfterAClear() {
+        EmbeddedTagStorage crashed = open();
+        crashed.saveAll(List.of(tag("A", "r1", 1_000_000L), tag("B", "r1", 2_000_000L), tag("C", "r1", 3_000_000L)));
+        List<TagDetail> beforeClear = crashed.findAll();
+        long lastSeqBeforeClear = beforeClear.stream().mapToLong(TagDetail::getChangeSeq).max().orElseThrow();
+
+        crashed.deleteAll();
+        crashed.saveAll(List.of(tag("C", "r1", 4_000_000L), tag("D", "r2", 5_000_000L)));
+        List<TagDetail> afterClear = crashed.findAll();
+        assertEquals(2, afterClear.size());
+        assertTrue(afterClear.stream().allMatch(t -> t.getId() <= 2), "cleared rows are reused from the start");
+        assertTrue(afterClear.stream().allMatch(t -> t.getChangeSeq() > lastSeqBeforeClear),
+                "change_seq keeps growing across a clear");
+        // Same ids as before the clear, but a different change_seq: nothing is marked
+        assertEquals(0, crashed.markSynced(beforeClear));
+
+        EmbeddedTagStorage recovered = open();
+        assertEquals(rows(crashed), rows(recovered));
+        recovered.save(tag("E", "r1", 6_000_000L));
+        TagDetail added = recovered.findByTagIdAndReader("E", "r1").orElseThrow();
+        assertEquals(3, added.getId());
+        assertTrue(added.getChangeSeq() > lastSeqBeforeClear);
+
+        recovered.close();
+        assertEquals(rows(recovered), rows(open()));
+    }
+
+    private EmbeddedTagStorage open() {
+        EmbeddedTagStorage storage = new EmbeddedTagStorage(baseDir, EVENT, LOG_BYTES);
+        opened.add(storage);
+        return storage;
+    }
+
+    private static TagDetail tag(String tagId, String reader, long lastSeenMicros) {
+        return new TagDetail(tagId, 1, TagDetail.instantOfMicros(lastSeenMicros - 500_000),
+                TagDetail.instantOfMicros(lastSeenMicros), reader);
+    }
+
+    /** Everything a row holds, so two stores compare equal only if recovery restored them exactly. */
+    private static List<String> rows(EmbeddedTagStorage storage) {
+        return storage.findAll().stream()
+                .map(t -> t.getId() + " " + t.getTagId() + "@" + t.getReader() + " " + t.getAntenna() + " "
+                        + t.getFirstSeen() + " " + t.getLastSeen() + " " + t.getStatus() + " " + t.getChangeSeq())
+                .sorted()
+                .toList();
+    }
+
+    private long latestLogGen() throws IOException {
+        try (Stream<Path> files = Files.list(baseDir.resolve(EVENT))) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(".log"))
+                    .mapToLong(name -> Long.parseLong(name.substring(0, name.length() - 4)))
+                    .max()
+                    .orElseThrow();
+        }
+    }
+
+    private Path logPath(long gen) {
+        return baseDir.resolve(EVENT).resolve(String.format("%020d.log", gen));
+    }
+
+    /** Offset just past the last complete record, found by following the record lengths. */
+    private static int endOfRecords(Path log) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(log));
+        int pos = 0;
+        while (pos + 8 <= buf.capacity() && buf.getInt(pos) > 0) {
+            pos += buf.getInt(pos);
+        }
+        return pos;
+    }
+}